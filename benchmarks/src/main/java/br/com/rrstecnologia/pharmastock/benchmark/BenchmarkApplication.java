@@ -0,0 +1,50 @@
+package br.com.rrstecnologia.pharmastock.benchmark;
+
+import br.com.rrstecnologia.pharmastock.PharmastockApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+final class BenchmarkApplication {
+
+    private static final String INSERT_SQL = "insert into pharma (id, name, brand, max, quantity, type, reorder_point) values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String[] TYPES = {"EMS", "HYPER", "ACHE", "EURO"};
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) throws IOException {
+        List<String> defaults = new ArrayList<>();
+        defaults.add("spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        defaults.add("server.port=0");
+        defaults.add("logging.level.root=WARN");
+        defaults.add("pharmastock.write-behind.journal-directory=" + Files.createTempDirectory("pharmastock-journal"));
+        return new SpringApplicationBuilder(PharmastockApplication.class)
+                .properties(defaults.toArray(new String[0]))
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Inserts pharmas with ids 1..size directly through JDBC, bypassing the sequence, with half the
+     * stock of their maximum so increments and decrements both have room.
+     */
+    static void seed(ConfigurableApplicationContext context, int size) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (long id = 1; id <= size; id++) {
+            batch.add(new Object[]{id, "Pharma " + id, "Brand " + (id % 100), 50, 25, TYPES[(int) (id % TYPES.length)], 10});
+            if (batch.size() == INSERT_BATCH_SIZE || id == size) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+                batch.clear();
+            }
+        }
+    }
+}
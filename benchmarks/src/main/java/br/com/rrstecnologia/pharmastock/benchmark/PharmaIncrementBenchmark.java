@@ -0,0 +1,87 @@
+package br.com.rrstecnologia.pharmastock.benchmark;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.service.PharmaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of PharmaService.increment against H2 while several threads hit the same items. Each
+ * operation increments and then decrements one unit so stock stays inside [0, max] for the whole run.
+ * hotItems controls how concurrent requests spread over the catalog: 1 means every thread fights for
+ * the same row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PharmaIncrementBenchmark {
+
+    @Param({"1", "100"})
+    private int hotItems;
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    private ConfigurableApplicationContext context;
+    private PharmaService pharmaService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start("pharmastock.write-behind.enabled=" + writeBehind);
+        BenchmarkApplication.seed(context, hotItems);
+        pharmaService = context.getBean(PharmaService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneThread(Blackhole blackhole) throws PharmaNotFoundException, PharmaStockExceededException {
+        incrementAndRestore(blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourThreads(Blackhole blackhole) throws PharmaNotFoundException, PharmaStockExceededException {
+        incrementAndRestore(blackhole);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void sixteenThreads(Blackhole blackhole) throws PharmaNotFoundException, PharmaStockExceededException {
+        incrementAndRestore(blackhole);
+    }
+
+    private void incrementAndRestore(Blackhole blackhole) throws PharmaNotFoundException, PharmaStockExceededException {
+        long id = ThreadLocalRandom.current().nextInt(hotItems) + 1L;
+        PharmaDTO incremented = pharmaService.increment(id, 1);
+        blackhole.consume(incremented);
+        blackhole.consume(pharmaService.decrement(id, 1));
+    }
+}
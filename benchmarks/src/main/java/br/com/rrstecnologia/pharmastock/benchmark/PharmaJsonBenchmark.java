@@ -0,0 +1,57 @@
+package br.com.rrstecnologia.pharmastock.benchmark;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost of the payload every controller endpoint returns, using the same Jackson
+ * defaults Spring MVC applies to the response body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PharmaJsonBenchmark {
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private PharmaDTO pharmaDTO;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        writer = objectMapper.writerFor(PharmaDTO.class);
+        reader = objectMapper.readerFor(PharmaDTO.class);
+        pharmaDTO = new PharmaDTO(1L, "Loratadina", "EMS", 50, 10, PharmaType.EMS, 5);
+        json = writer.writeValueAsBytes(pharmaDTO);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(pharmaDTO);
+    }
+
+    @Benchmark
+    public PharmaDTO deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
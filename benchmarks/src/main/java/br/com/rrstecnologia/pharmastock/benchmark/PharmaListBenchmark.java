@@ -0,0 +1,81 @@
+package br.com.rrstecnologia.pharmastock.benchmark;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaFilterDTO;
+import br.com.rrstecnologia.pharmastock.service.PharmaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of PharmaService.listAll for the first page, a page deep into the catalog through offset
+ * paging, and the same position reached with the afterId cursor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PharmaListBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000", "10000", "100000"})
+    private int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private PharmaService pharmaService;
+    private Pageable firstPage;
+    private Pageable deepPage;
+    private PharmaFilterDTO deepCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, catalogSize);
+        pharmaService = context.getBean(PharmaService.class);
+        firstPage = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+        int deepPageNumber = (catalogSize / PAGE_SIZE) * 9 / 10;
+        deepPage = PageRequest.of(deepPageNumber, PAGE_SIZE, Sort.by("id"));
+        deepCursor = PharmaFilterDTO.builder().afterId((long) deepPageNumber * PAGE_SIZE).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<PharmaDTO> firstPage() {
+        return pharmaService.listAll(new PharmaFilterDTO(), firstPage);
+    }
+
+    @Benchmark
+    public Slice<PharmaDTO> deepPageByOffset() {
+        return pharmaService.listAll(new PharmaFilterDTO(), deepPage);
+    }
+
+    @Benchmark
+    public Slice<PharmaDTO> deepPageByCursor() {
+        return pharmaService.listAll(deepCursor, firstPage);
+    }
+}
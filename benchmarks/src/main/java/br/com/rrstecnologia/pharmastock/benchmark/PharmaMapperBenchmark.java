@@ -0,0 +1,40 @@
+package br.com.rrstecnologia.pharmastock.benchmark;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PharmaMapperBenchmark {
+
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+    private final Pharma pharma = new Pharma(1L, "Loratadina", "EMS", 50, 10, PharmaType.EMS, 5);
+    private final PharmaDTO pharmaDTO = new PharmaDTO(1L, "Loratadina", "EMS", 50, 10, PharmaType.EMS, 5);
+
+    @Benchmark
+    public PharmaDTO toDTO() {
+        return pharmaMapper.toDTO(pharma);
+    }
+
+    @Benchmark
+    public Pharma toModel() {
+        return pharmaMapper.toModel(pharmaDTO);
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.rrstecnologia.pharmastock.benchmark;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaFilterDTO;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.service.PharmaService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of one listPharms response body: the previous path, which loads managed entities and copies
+ * them through PharmaMapper, against the constructor projection listAll uses now. Run it with the GC
+ * profiler (-prof gc) and compare gc.alloc.rate.norm, the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PharmaReadPathBenchmark {
+
+    private static final int CATALOG_SIZE = 10000;
+
+    @Param({"50", "500"})
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private PharmaService pharmaService;
+    private PharmaRepository pharmaRepository;
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+    private ObjectWriter writer;
+    private Pageable page;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, CATALOG_SIZE);
+        pharmaService = context.getBean(PharmaService.class);
+        pharmaRepository = context.getBean(PharmaRepository.class);
+        writer = Jackson2ObjectMapperBuilder.json().build().writerFor(new TypeReference<List<PharmaDTO>>() {});
+        page = PageRequest.of(0, pageSize, Sort.by("id"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] entitiesThroughMapper() throws IOException {
+        List<PharmaDTO> pharmas = pharmaRepository.findAll(page).stream()
+                .map(pharmaMapper::toDTO)
+                .collect(Collectors.toList());
+        return writer.writeValueAsBytes(pharmas);
+    }
+
+    @Benchmark
+    public byte[] projection() throws IOException {
+        return writer.writeValueAsBytes(pharmaService.listAll(new PharmaFilterDTO(), page).getContent());
+    }
+}
@@ -0,0 +1,90 @@
+package br.com.rrstecnologia.pharmastock.benchmark;
+
+import br.com.rrstecnologia.pharmastock.config.WireFormatConfig;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of writing a page of pharmas as JSON (the current response) and as Smile, with and without the
+ * gzip applied by server.compression. Bytes on the wire for each combination are reported as the
+ * serialize:bytes and serializeGzip:bytes secondary results, next to the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PharmaWireFormatBenchmark {
+
+    private static final PharmaType[] TYPES = PharmaType.values();
+
+    @Param({"json", "smile"})
+    private String format;
+
+    @Param({"50", "500"})
+    private int pageSize;
+
+    private ObjectWriter writer;
+    private List<PharmaDTO> page;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+
+        public long bytes;
+    }
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = "smile".equals(format)
+                ? WireFormatConfig.smileObjectMapper(Jackson2ObjectMapperBuilder.json())
+                : Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerFor(new TypeReference<List<PharmaDTO>>() {});
+        page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            page.add(new PharmaDTO((long) i + 1, "Pharma " + i, "Brand " + (i % 20), 50, i % 50, TYPES[i % TYPES.length], 5));
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(PayloadSize payloadSize) throws IOException {
+        byte[] payload = writer.writeValueAsBytes(page);
+        payloadSize.bytes = payload.length;
+        return payload;
+    }
+
+    @Benchmark
+    public byte[] serializeGzip(PayloadSize payloadSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            writer.writeValue(gzip, page);
+        }
+        byte[] payload = bytes.toByteArray();
+        payloadSize.bytes = payload.length;
+        return payload;
+    }
+}
@@ -0,0 +1,90 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal closed-loop HTTP load generator used when hey is not installed: a fixed number of clients
+ * send requests back to back for a fixed duration. Prints a summary in the same shape as hey's.
+ * Usage: java loadtest/HttpLoad.java seconds concurrency url [method json-body]
+ */
+public class HttpLoad {
+
+    public static void main(String[] args) throws Exception {
+        long seconds = Long.parseLong(args[0]);
+        int concurrency = Integer.parseInt(args[1]);
+        URI uri = URI.create(args[2]);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30));
+        if (args.length > 4) {
+            requestBuilder.header("Content-Type", "application/json")
+                    .method(args[3], HttpRequest.BodyPublishers.ofString(args[4]));
+        }
+        HttpRequest request = requestBuilder.build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<List<Long>> latencies = new ArrayList<>();
+        Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        AtomicLong errors = new AtomicLong();
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            List<Long> clientLatencies = new ArrayList<>();
+            latencies.add(clientLatencies);
+            clients.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        clientLatencies.add(System.nanoTime() - sent);
+                        statuses.computeIfAbsent(response.statusCode(), status -> new AtomicLong()).incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        List<Long> all = new ArrayList<>();
+        latencies.forEach(all::addAll);
+        Collections.sort(all);
+        System.out.printf("%nSummary:%n");
+        System.out.printf("  Total:\t%.4f secs%n", elapsed);
+        System.out.printf("  Requests/sec:\t%.4f%n", all.size() / elapsed);
+        System.out.printf("%nLatency distribution:%n");
+        for (int percentile : new int[]{10, 25, 50, 75, 90, 95, 99}) {
+            System.out.printf("  %d%% in %.4f secs%n", percentile, percentile(all, percentile) / 1e9);
+        }
+        System.out.printf("%nStatus code distribution:%n");
+        new TreeMap<>(statuses).forEach((status, count) -> System.out.printf("  [%d]\t%d responses%n", status, count.get()));
+        if (errors.get() > 0) {
+            System.out.printf("%nError distribution:%n  [%d]\trequests failed%n", errors.get());
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+}
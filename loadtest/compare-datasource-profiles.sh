@@ -0,0 +1,81 @@
+#!/usr/bin/env bash
+# Compares request throughput on PostgreSQL with Hikari/JPA defaults (postgres profile) and with the
+# production tuning (prod profile = postgres + tuned). JDBC batching with ordered inserts and updates
+# is part of the base configuration, so both runs use it and the difference comes from the tuned profile
+# alone. Each run migrates its own empty schema.
+# Requires: a PostgreSQL reachable with the postgres profile settings (docker compose up -d) and curl. Load
+# is generated with hey (https://github.com/rakyll/hey) when installed, otherwise with loadtest/HttpLoad.java
+# (durations in seconds).
+# Usage: loadtest/compare-datasource-profiles.sh [concurrency] [duration] [extra application arguments...]
+set -euo pipefail
+
+CONCURRENCY=${1:-100}
+DURATION=${2:-30s}
+PORT=${PORT:-8080}
+BASE_URL="http://localhost:${PORT}/api/v1/pharmas"
+JAR=$(ls target/pharmastock-*-exec.jar | head -n 1)
+RESULTS_DIR=${RESULTS_DIR:-target/loadtest}
+DB_URL=${PHARMASTOCK_DB_URL:-jdbc:postgresql://localhost:5432/pharmastock}
+
+mkdir -p "${RESULTS_DIR}"
+
+wait_until_up() {
+  for _ in $(seq 1 60); do
+    if curl -sf "http://localhost:${PORT}/actuator/health" > /dev/null; then
+      return 0
+    fi
+    sleep 1
+  done
+  echo "application did not start" >&2
+  return 1
+}
+
+load() {
+  if command -v hey > /dev/null; then
+    if [ $# -gt 1 ]; then
+      hey -z "${DURATION}" -c "${CONCURRENCY}" -m "$2" -T application/json -d "$3" "$1"
+    else
+      hey -z "${DURATION}" -c "${CONCURRENCY}" "$1"
+    fi
+  else
+    java "$(dirname "$0")/HttpLoad.java" "${DURATION%s}" "${CONCURRENCY}" "$@"
+  fi
+}
+
+seed() {
+  for i in $(seq 1 200); do
+    curl -sf -o /dev/null -H 'Content-Type: application/json' \
+      -d "{\"name\":\"Pharma ${i}\",\"brand\":\"Brand $((i % 10))\",\"max\":50,\"quantity\":25,\"type\":\"EMS\"}" \
+      "${BASE_URL}"
+  done
+}
+
+for profile in postgres prod; do
+  schema="loadtest_${profile}_$(date +%s)"
+  java -jar "${JAR}" --server.port="${PORT}" --spring.profiles.active="${profile}" \
+    --PHARMASTOCK_DB_URL="${DB_URL}?currentSchema=${schema}" --spring.flyway.schemas="${schema}" "${@:3}" \
+    > "${RESULTS_DIR}/${profile}-app.log" 2>&1 &
+  app_pid=$!
+  trap 'kill ${app_pid} 2> /dev/null || true' EXIT
+  wait_until_up
+  seed
+  first_id=$(curl -sf "${BASE_URL}?size=1" | sed -E 's/^\[\{"id":([0-9]+).*/\1/')
+
+  echo "== ${profile}: GET list, ${CONCURRENCY} concurrent clients for ${DURATION}"
+  load "${BASE_URL}?size=50" | tee "${RESULTS_DIR}/${profile}-list.txt"
+
+  echo "== ${profile}: GET by name, ${CONCURRENCY} concurrent clients for ${DURATION}"
+  load "${BASE_URL}/Pharma%201" | tee "${RESULTS_DIR}/${profile}-find.txt"
+
+  echo "== ${profile}: PATCH increment and decrement, ${CONCURRENCY} concurrent clients for ${DURATION}"
+  load "${BASE_URL}/${first_id}/increment" PATCH '{"quantity":1}' > "${RESULTS_DIR}/${profile}-increment.txt" &
+  increment_pid=$!
+  load "${BASE_URL}/${first_id}/decrement" PATCH '{"quantity":1}' | tee "${RESULTS_DIR}/${profile}-decrement.txt"
+  wait "${increment_pid}"
+  cat "${RESULTS_DIR}/${profile}-increment.txt"
+
+  kill "${app_pid}"
+  wait "${app_pid}" 2> /dev/null || true
+done
+
+echo "Results written to ${RESULTS_DIR}"
@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+# Compares request throughput of the platform and virtual execution modes.
+# Requires: a Java 21 runtime on PATH (for the virtual mode) and curl. Load is generated with hey
+# (https://github.com/rakyll/hey) when installed, otherwise with loadtest/HttpLoad.java (durations in seconds).
+# Usage: loadtest/compare-execution-modes.sh [concurrency] [duration] [extra application arguments...]
+set -euo pipefail
+
+CONCURRENCY=${1:-500}
+DURATION=${2:-30s}
+PORT=${PORT:-8080}
+BASE_URL="http://localhost:${PORT}/api/v1/pharmas"
+JAR=$(ls target/pharmastock-*-exec.jar | head -n 1)
+RESULTS_DIR=${RESULTS_DIR:-target/loadtest}
+
+mkdir -p "${RESULTS_DIR}"
+
+wait_until_up() {
+  for _ in $(seq 1 60); do
+    if curl -sf "http://localhost:${PORT}/actuator/health" > /dev/null; then
+      return 0
+    fi
+    sleep 1
+  done
+  echo "application did not start" >&2
+  return 1
+}
+
+load() {
+  if command -v hey > /dev/null; then
+    hey -z "${DURATION}" -c "${CONCURRENCY}" "$1"
+  else
+    java "$(dirname "$0")/HttpLoad.java" "${DURATION%s}" "${CONCURRENCY}" "$1"
+  fi
+}
+
+seed() {
+  for i in $(seq 1 200); do
+    curl -sf -o /dev/null -H 'Content-Type: application/json' \
+      -d "{\"name\":\"Pharma ${i}\",\"brand\":\"Brand $((i % 10))\",\"max\":50,\"quantity\":25,\"type\":\"EMS\"}" \
+      "${BASE_URL}"
+  done
+}
+
+for mode in platform virtual; do
+  java -jar "${JAR}" --server.port="${PORT}" --pharmastock.execution.mode="${mode}" "${@:3}" \
+    > "${RESULTS_DIR}/${mode}-app.log" 2>&1 &
+  app_pid=$!
+  trap 'kill ${app_pid} 2> /dev/null || true' EXIT
+  wait_until_up
+  seed
+
+  echo "== ${mode}: GET list, ${CONCURRENCY} concurrent clients for ${DURATION}"
+  load "${BASE_URL}?size=50" | tee "${RESULTS_DIR}/${mode}-list.txt"
+
+  echo "== ${mode}: GET by name, ${CONCURRENCY} concurrent clients for ${DURATION}"
+  load "${BASE_URL}/Pharma%201" | tee "${RESULTS_DIR}/${mode}-find.txt"
+
+  kill "${app_pid}"
+  wait "${app_pid}" 2> /dev/null || true
+done
+
+echo "Results written to ${RESULTS_DIR}"
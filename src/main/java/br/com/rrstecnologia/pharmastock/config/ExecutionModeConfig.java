@@ -0,0 +1,71 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * With pharmastock.execution.mode=virtual every request runs on its own virtual thread instead of the
+ * Tomcat worker pool, so requests blocked on JDBC no longer hold a scarce platform thread. The factory
+ * method is looked up reflectively because the build still targets Java 11; starting in that mode on
+ * an older runtime fails fast.
+ */
+@Slf4j
+@Configuration
+public class ExecutionModeConfig {
+
+    private static final String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    @Bean
+    @ConditionalOnProperty(prefix = "pharmastock.execution", name = "mode", havingValue = "virtual")
+    public VirtualThreadCustomizer virtualThreadProtocolHandlerCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("Serving requests on virtual threads");
+        return new VirtualThreadCustomizer(executor);
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY).invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("pharmastock.execution.mode=virtual requires Java 21 or later, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+
+    /**
+     * Hands the executor to Tomcat and shuts it down with the context. Tomcat only stops executors it
+     * created itself, and by the time beans are destroyed the web server no longer takes requests.
+     */
+    static final class VirtualThreadCustomizer implements TomcatProtocolHandlerCustomizer<ProtocolHandler>, DisposableBean {
+
+        private final ExecutorService executor;
+
+        private VirtualThreadCustomizer(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void customize(ProtocolHandler protocolHandler) {
+            protocolHandler.setExecutor(executor);
+        }
+
+        @Override
+        public void destroy() throws InterruptedException {
+            executor.shutdown();
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PharmastockProperties.class)
+public class PharmastockConfig {
+}
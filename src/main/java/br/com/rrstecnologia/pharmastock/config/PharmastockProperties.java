@@ -0,0 +1,180 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import br.com.rrstecnologia.pharmastock.enums.ExecutionMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "pharmastock")
+public class PharmastockProperties {
+
+    private final WriteBehind writeBehind = new WriteBehind();
+
+    private final Batch batch = new Batch();
+
+    private final CatalogImport catalogImport = new CatalogImport();
+
+    private final NameCache nameCache = new NameCache();
+
+    private final Execution execution = new Execution();
+
+    private final Snapshot snapshot = new Snapshot();
+
+    private final LowStock lowStock = new LowStock();
+
+    private final ChangeStream changeStream = new ChangeStream();
+
+    private final Reservation reservation = new Reservation();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final Aggregates aggregates = new Aggregates();
+
+    private final Replica replica = new Replica();
+
+    private final SecondLevelCache secondLevelCache = new SecondLevelCache();
+
+    @Data
+    public static class WriteBehind {
+
+        private boolean enabled = false;
+
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        private int batchSize = 500;
+
+        private String journalDirectory = "data/stock-journal";
+    }
+
+    @Data
+    public static class Batch {
+
+        private int chunkSize = 500;
+    }
+
+    @Data
+    public static class CatalogImport {
+
+        private int chunkSize = 500;
+
+        private int maxReportedRejections = 1000;
+    }
+
+    @Data
+    public static class NameCache {
+
+        private long maximumSize = 10000;
+
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Execution {
+
+        private ExecutionMode mode = ExecutionMode.PLATFORM;
+    }
+
+    @Data
+    public static class Snapshot {
+
+        private boolean enabled = false;
+
+        private String directory = "data/snapshot";
+
+        private Duration interval = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class LowStock {
+
+        private int nearMargin = 5;
+
+        private Duration streamTimeout = Duration.ofMinutes(30);
+
+        private int pendingNotifications = 1000;
+    }
+
+    @Data
+    public static class ChangeStream {
+
+        private int bufferSize = 1000;
+
+        private int retention = 10000;
+
+        private Duration coalesceWindow = Duration.ofMillis(200);
+
+        private Duration timeout = Duration.ofMinutes(30);
+
+        private int dispatcherThreads = 2;
+    }
+
+    @Data
+    public static class Reservation {
+
+        private Duration defaultTtl = Duration.ofMinutes(15);
+
+        private Duration maxTtl = Duration.ofHours(1);
+
+        private Duration tick = Duration.ofSeconds(1);
+
+        private int wheelSize = 512;
+
+        private int lockStripes = 64;
+    }
+
+    @Data
+    public static class Idempotency {
+
+        private long maximumSize = 100000;
+
+        private Duration ttl = Duration.ofHours(24);
+
+        private int maxBodySize = 16384;
+
+        private Duration inFlightWait = Duration.ofSeconds(10);
+
+        private boolean persistent = false;
+
+        private Duration purgeInterval = Duration.ofMinutes(10);
+
+        private Duration claimLease = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Aggregates {
+
+        private Duration reconcileInterval = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Replica {
+
+        private boolean enabled = false;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 16;
+
+        private Duration maxLag = Duration.ofSeconds(2);
+
+        private Duration heartbeatInterval = Duration.ofMillis(500);
+
+        private Duration readYourWritesWindow = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class SecondLevelCache {
+
+        private long maximumSize = 10000;
+
+        private long queryMaximumSize = 1000;
+
+        private Duration timeToLive = Duration.ofMinutes(10);
+    }
+}
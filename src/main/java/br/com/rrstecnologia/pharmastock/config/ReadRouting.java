@@ -0,0 +1,65 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Constraints on where read-only transactions may run. Transactions go to the primary unless they
+ * opt in to the replica with {@link #allowReplica(long)}, which lasts until the transaction completes;
+ * the web layer can additionally pin every read of a request to the primary. ReplicaRoutingDataSource
+ * reads both when a read-only transaction takes its connection.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+    private static final Object REPLICA_FRESHNESS = new Object();
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Sends every read of the current request to the primary, e.g. right after the client wrote.
+     */
+    public static void requirePrimary() {
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+    }
+
+    /**
+     * Lets the current read-only transaction use the replica once it has replayed the primary up to
+     * {@code epochMicros}. Does nothing outside a transaction.
+     */
+    public static void allowReplica(long epochMicros) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Long current = (Long) TransactionSynchronizationManager.getResource(REPLICA_FRESHNESS);
+        if (current == null) {
+            TransactionSynchronizationManager.bindResource(REPLICA_FRESHNESS, epochMicros);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(REPLICA_FRESHNESS);
+                }
+            });
+        } else if (current < epochMicros) {
+            TransactionSynchronizationManager.unbindResource(REPLICA_FRESHNESS);
+            TransactionSynchronizationManager.bindResource(REPLICA_FRESHNESS, epochMicros);
+        }
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+
+    /**
+     * @return how far the replica must have replayed to serve the current transaction, or null when
+     * the transaction did not opt in to the replica
+     */
+    public static Long replicaFreshness() {
+        return (Long) TransactionSynchronizationManager.getResource(REPLICA_FRESHNESS);
+    }
+
+    public static void clear() {
+        PRIMARY_REQUIRED.remove();
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how far the replica is behind the primary: a heartbeat row is rewritten on the primary on
+ * every interval and read back from the replica, whose copy is the primary time it has replayed up to.
+ * The replica serves reads only while that lag stays within pharmastock.replica.max-lag.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String UPDATE_SQL = "update replica_heartbeat set beat_at = ? where id = 1";
+    private static final String INSERT_SQL = "insert into replica_heartbeat (id, beat_at) values (1, ?)";
+    private static final String SELECT_SQL = "select beat_at from replica_heartbeat where id = 1";
+
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final PharmastockProperties.Replica properties;
+    private volatile long replayedUpToMicros;
+    private ScheduledExecutorService heartbeat;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, PharmastockProperties.Replica properties) {
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        long intervalMillis = properties.getHeartbeatInterval().toMillis();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::beat, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdown();
+    }
+
+    /**
+     * @return true when the replica is within the lag bound and has replayed the primary up to
+     * {@code requiredMicros}
+     */
+    public boolean canServe(long requiredMicros) {
+        long replayedUpTo = replayedUpToMicros;
+        return replayedUpTo >= requiredMicros
+                && nowMicros() - replayedUpTo <= TimeUnit.MILLISECONDS.toMicros(properties.getMaxLag().toMillis());
+    }
+
+    public long lagMillis() {
+        return TimeUnit.MICROSECONDS.toMillis(nowMicros() - replayedUpToMicros);
+    }
+
+    void beat() {
+        try {
+            long now = nowMicros();
+            if (primaryJdbcTemplate.update(UPDATE_SQL, now) == 0) {
+                insertFirstBeat(now);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not write replica heartbeat to the primary", e);
+        }
+        try {
+            List<Long> beats = replicaJdbcTemplate.queryForList(SELECT_SQL, Long.class);
+            if (!beats.isEmpty()) {
+                replayedUpToMicros = beats.get(0);
+            }
+        } catch (DataAccessException e) {
+            replayedUpToMicros = 0L;
+            log.warn("Could not read replica heartbeat, reads go to the primary", e);
+        }
+    }
+
+    private void insertFirstBeat(long now) {
+        try {
+            primaryJdbcTemplate.update(INSERT_SQL, now);
+        } catch (DuplicateKeyException e) {
+            log.debug("Replica heartbeat row created by another node");
+        }
+    }
+
+    static long nowMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,37 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Opts read-only transactions in to the replica. Their session keeps reading the second-level cache
+ * but never stores into it: a row loaded from a lagging replica would otherwise stay cached for every
+ * later reader, including the lookups by id that must see the primary.
+ */
+@Component
+public class ReplicaReads {
+
+    private final EntityManager entityManager;
+    private final boolean enabled;
+
+    public ReplicaReads(EntityManager entityManager, PharmastockProperties pharmastockProperties) {
+        this.entityManager = entityManager;
+        this.enabled = pharmastockProperties.getReplica().isEnabled();
+    }
+
+    /**
+     * Lets the current read-only transaction run on the replica once it has replayed the primary up to
+     * {@code epochMicros}. Does nothing when the replica is disabled or the transaction also writes.
+     */
+    public void allow(long epochMicros) {
+        if (!enabled || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        entityManager.unwrap(Session.class).setCacheMode(CacheMode.GET);
+        ReadRouting.allowReplica(epochMicros);
+    }
+}
@@ -0,0 +1,43 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions that opted in through ReadRouting to the replica when it is fresh
+ * enough for them, and everything else to the primary. Must sit behind a LazyConnectionDataSourceProxy,
+ * so the connection is taken after the transaction has been marked read-only and has opted in.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Target.PRIMARY, primary);
+        targets.put(Target.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Long replicaFreshness = ReadRouting.replicaFreshness();
+        boolean replicaRead = replicaFreshness != null
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !ReadRouting.isPrimaryRequired()
+                && replicaLagMonitor.canServe(replicaFreshness);
+        return replicaRead ? Target.REPLICA : Target.PRIMARY;
+    }
+}
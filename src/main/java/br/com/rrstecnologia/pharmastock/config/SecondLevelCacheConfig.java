@@ -0,0 +1,60 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Hibernate second-level cache regions, held on-heap by Caffeine behind Hibernate's JCache region
+ * factory. Pharma rows and name lookups are bounded and expire after the time to live; the update
+ * timestamps region, which tells Hibernate when cached query results went stale, is never evicted.
+ * Entries are stored by reference, since Hibernate already caches a disassembled copy of each row.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String PHARMA_REGION = "pharma";
+    public static final String PHARMA_BY_NAME_REGION = "pharma-by-name";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(PharmastockProperties pharmastockProperties) {
+        PharmastockProperties.SecondLevelCache properties = pharmastockProperties.getSecondLevelCache();
+        CacheManager cacheManager = new CaffeineCachingProvider()
+                .getCacheManager(URI.create(getClass().getName()), getClass().getClassLoader());
+        cacheManager.createCache(PHARMA_REGION,
+                boundedRegion(properties.getMaximumSize(), properties.getTimeToLive()));
+        cacheManager.createCache(PHARMA_BY_NAME_REGION,
+                boundedRegion(properties.getQueryMaximumSize(), properties.getTimeToLive()));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                boundedRegion(properties.getQueryMaximumSize(), properties.getTimeToLive()));
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, byReference());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> boundedRegion(long maximumSize, Duration timeToLive) {
+        CaffeineConfiguration<Object, Object> configuration = byReference();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(timeToLive.toNanos()));
+        return configuration;
+    }
+
+    private static CaffeineConfiguration<Object, Object> byReference() {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        return configuration;
+    }
+}
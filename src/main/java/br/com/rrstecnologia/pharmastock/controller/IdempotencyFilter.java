@@ -0,0 +1,225 @@
+package br.com.rrstecnologia.pharmastock.controller;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.service.IdempotencyStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies the Idempotency-Key header to mutating requests. The first request with a key runs and,
+ * when successful, its response is stored; a retry with the same key, method, path and body gets the
+ * stored response back without running again. Failed requests release the key so they can be retried.
+ * A successful request whose response cannot be stored keeps the key claimed, so a retry is refused
+ * instead of running the change twice.
+ */
+@Slf4j
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final List<String> IDEMPOTENT_METHODS = Arrays.asList(
+            HttpMethod.POST.name(), HttpMethod.PATCH.name(), HttpMethod.DELETE.name());
+    private static final List<String> REPLAYED_HEADERS = Arrays.asList(
+            HttpHeaders.LOCATION, HttpHeaders.ETAG, PharmaController.TOTAL_COUNT_HEADER, HttpHeaders.VARY);
+
+    private final IdempotencyStore idempotencyStore;
+    private final int maxBodySize;
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore, PharmastockProperties pharmastockProperties) {
+        this.idempotencyStore = idempotencyStore;
+        this.maxBodySize = pharmastockProperties.getIdempotency().getMaxBodySize();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(IDEMPOTENCY_KEY_HEADER) == null || !IDEMPOTENT_METHODS.contains(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), IDEMPOTENCY_KEY_HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = readBody(request.getInputStream());
+        if (body == null) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Requests with " + IDEMPOTENCY_KEY_HEADER + " are limited to " + maxBodySize + " bytes");
+            return;
+        }
+
+        IdempotencyStore.Claim claim;
+        try {
+            claim = idempotencyStore.claim(key, fingerprint(request, body));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        switch (claim.getStatus()) {
+            case REPLAY:
+                replay(claim.getResponse(), response);
+                return;
+            case CONFLICT:
+                response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), IDEMPOTENCY_KEY_HEADER + " was already used for a different request");
+                return;
+            case IN_PROGRESS:
+                response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still running");
+                return;
+            default:
+                break;
+        }
+
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean succeeded = false;
+        try {
+            filterChain.doFilter(new CachedBodyRequest(request, body), cachingResponse);
+            succeeded = HttpStatus.Series.valueOf(cachingResponse.getStatus()) == HttpStatus.Series.SUCCESSFUL;
+        } finally {
+            if (succeeded) {
+                store(key, claim, cachingResponse);
+            } else {
+                idempotencyStore.abandon(claim);
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * The change already ran, so a failure to store its response must not release the key: the claim
+     * is kept and retries get 409 until it expires rather than running the change again.
+     */
+    private void store(String key, IdempotencyStore.Claim claim, ContentCachingResponseWrapper response) {
+        try {
+            idempotencyStore.complete(claim, new IdempotencyStore.StoredResponse(response.getStatus(),
+                    response.getContentType(), replayedHeaders(response), response.getContentAsByteArray()));
+        } catch (RuntimeException e) {
+            log.warn("Could not store the response for idempotency key {}; the key stays claimed until it expires", key, e);
+        }
+    }
+
+    private static Map<String, String> replayedHeaders(HttpServletResponse response) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : REPLAYED_HEADERS) {
+            Collection<String> values = response.getHeaders(name);
+            if (!values.isEmpty()) {
+                headers.put(name, String.join(", ", values));
+            }
+        }
+        return headers;
+    }
+
+    private static void replay(IdempotencyStore.StoredResponse storedResponse, HttpServletResponse response) throws IOException {
+        response.setStatus(storedResponse.getStatus());
+        response.setHeader(IDEMPOTENT_REPLAYED_HEADER, "true");
+        storedResponse.getHeaders().forEach(response::setHeader);
+        if (storedResponse.getContentType() != null) {
+            response.setContentType(storedResponse.getContentType());
+        }
+        response.setContentLength(storedResponse.getBody().length);
+        response.getOutputStream().write(storedResponse.getBody());
+    }
+
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        String query = request.getQueryString() == null ? "" : "?" + request.getQueryString();
+        return request.getMethod() + " " + request.getRequestURI() + query + " " + DigestUtils.md5DigestAsHex(body);
+    }
+
+    /**
+     * @return the body, or null when it is larger than the limit
+     */
+    private byte[] readBody(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            if (body.size() + read > maxBodySize) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return inputStream.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return inputStream.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(getCharacterEncoding());
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
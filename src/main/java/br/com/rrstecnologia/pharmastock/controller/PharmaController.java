@@ -1,18 +1,59 @@
 package br.com.rrstecnologia.pharmastock.controller;
 
 
+import br.com.rrstecnologia.pharmastock.config.WireFormatConfig;
+import br.com.rrstecnologia.pharmastock.dto.ImportReportDTO;
+import br.com.rrstecnologia.pharmastock.dto.LocationStockDTO;
+import br.com.rrstecnologia.pharmastock.dto.LocationStockTotalDTO;
+import br.com.rrstecnologia.pharmastock.dto.LowStockDTO;
 import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaFilterDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaSummaryDTO;
 import br.com.rrstecnologia.pharmastock.dto.QuantityDTO;
+import br.com.rrstecnologia.pharmastock.dto.ReservationDTO;
+import br.com.rrstecnologia.pharmastock.dto.ReservationRequestDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentResultDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAggregateDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockBatchDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockMovementDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaImportFormat;
+import br.com.rrstecnologia.pharmastock.enums.StockAggregateGrouping;
+import br.com.rrstecnologia.pharmastock.exception.InvalidImportFormatException;
+import br.com.rrstecnologia.pharmastock.exception.InvalidLocationException;
+import br.com.rrstecnologia.pharmastock.exception.InvalidReorderPointException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaAlreadyRegisteredException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.exception.ReservationNotFoundException;
+import br.com.rrstecnologia.pharmastock.service.LocationStockService;
+import br.com.rrstecnologia.pharmastock.service.LowStockMonitor;
+import br.com.rrstecnologia.pharmastock.service.PharmaChangeStream;
+import br.com.rrstecnologia.pharmastock.service.PharmaExportService;
+import br.com.rrstecnologia.pharmastock.service.PharmaImportService;
+import br.com.rrstecnologia.pharmastock.service.PharmaNameIndex;
 import br.com.rrstecnologia.pharmastock.service.PharmaService;
+import br.com.rrstecnologia.pharmastock.service.ReservationService;
+import br.com.rrstecnologia.pharmastock.service.StockAggregateService;
+import br.com.rrstecnologia.pharmastock.service.StockBatchService;
+import br.com.rrstecnologia.pharmastock.service.StockMovementService;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -21,21 +62,103 @@ import java.util.List;
 //@AllArgsConstructor(onConstructor = @__({@Autowired}))
 public class PharmaController implements PharmaControllerDocs{
 
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final String NEXT_AFTER_ID_HEADER = "X-Next-After-Id";
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
     private final PharmaService pharmaService;
+    private final StockBatchService stockBatchService;
+    private final PharmaImportService pharmaImportService;
+    private final PharmaExportService pharmaExportService;
+    private final PharmaNameIndex pharmaNameIndex;
+    private final StockMovementService stockMovementService;
+    private final LowStockMonitor lowStockMonitor;
+    private final PharmaChangeStream pharmaChangeStream;
+    private final LocationStockService locationStockService;
+    private final ReservationService reservationService;
+    private final StockAggregateService stockAggregateService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public PharmaDTO createPharma(@RequestBody @Valid PharmaDTO pharmaDTO) throws PharmaAlreadyRegisteredException{
+    public PharmaDTO createPharma(@RequestBody @Valid PharmaDTO pharmaDTO) throws PharmaAlreadyRegisteredException, InvalidReorderPointException{
         return pharmaService.createPharma(pharmaDTO);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", NDJSON_VALUE})
+    public ImportReportDTO importPharmas(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) throws IOException, InvalidImportFormatException{
+        return pharmaImportService.importCatalog(body, PharmaImportFormat.fromContentType(contentType));
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON_VALUE)
+    public void exportPharmas(HttpServletResponse response) throws IOException{
+        response.setContentType(NDJSON_VALUE);
+        pharmaExportService.exportCatalog(response.getOutputStream());
+    }
+
+    @GetMapping("/search")
+    public List<PharmaSummaryDTO> search(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        return pharmaNameIndex.search(prefix, limit);
+    }
+
+    @GetMapping("/low-stock")
+    public List<LowStockDTO> lowStock(@RequestParam(defaultValue = "50") int limit, @RequestParam(defaultValue = "false") boolean includeNear) {
+        return lowStockMonitor.lowStock(limit, includeNear);
+    }
+
+    @GetMapping(value = "/low-stock/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter lowStockStream() {
+        return lowStockMonitor.subscribe();
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) Long lastEventId,
+                              @RequestParam(required = false) Long since) {
+        return pharmaChangeStream.subscribe(since != null ? since : lastEventId);
+    }
+
+    @GetMapping("/locations")
+    public List<LocationStockTotalDTO> locationTotals() {
+        return locationStockService.totalsByLocation();
+    }
+
+    @GetMapping("/aggregates")
+    public List<StockAggregateDTO> aggregates(@RequestParam(defaultValue = "TYPE") StockAggregateGrouping groupBy) {
+        return stockAggregateService.aggregates(groupBy);
+    }
+
+    /**
+     * The version is read before the lookup, so a change committed in between can only make the ETag
+     * older than the body; the lookup comes before the conditional check so an unknown name is a 404,
+     * never a 304.
+     */
     @GetMapping("/{name}")
-    public PharmaDTO findByName(@PathVariable String name) throws PharmaNotFoundException{
-        return pharmaService.findByName(name);
+    public PharmaDTO findByName(@PathVariable String name, ServletWebRequest webRequest) throws PharmaNotFoundException{
+        long version = pharmaService.version(name);
+        PharmaDTO pharmaDTO = pharmaService.findByName(name);
+        if(webRequest.checkNotModified(etag(version, webRequest))){
+            return null;
+        }
+        return pharmaDTO;
     }
 
     @GetMapping
-    public List<PharmaDTO> listPharms() { return pharmaService.listAll(); }
+    public ResponseEntity<List<PharmaDTO>> listPharms(PharmaFilterDTO filter, @PageableDefault(size = 50, sort = "id") Pageable pageable,
+                                                      ServletWebRequest webRequest) {
+        if(webRequest.checkNotModified(etag(pharmaService.catalogVersion(), webRequest))){
+            return null;
+        }
+        Slice<PharmaDTO> pharmas = pharmaService.listAll(filter, pageable);
+        HttpHeaders headers = new HttpHeaders();
+        if(pharmas instanceof Page){
+            headers.set(TOTAL_COUNT_HEADER, String.valueOf(((Page<PharmaDTO>) pharmas).getTotalElements()));
+        }
+        if(pharmas.hasNext() && filter.getAfterId() != null){
+            List<PharmaDTO> content = pharmas.getContent();
+            headers.set(NEXT_AFTER_ID_HEADER, String.valueOf(content.get(content.size() - 1).getId()));
+        }
+        return ResponseEntity.ok().headers(headers).body(pharmas.getContent());
+    }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -53,6 +176,61 @@ public class PharmaController implements PharmaControllerDocs{
         return pharmaService.decrement(id, quantityDTO.getQuantity());
     }
 
+    @GetMapping("/{id}/locations")
+    public List<LocationStockDTO> locationStock(@PathVariable Long id) {
+        return locationStockService.findByPharma(id);
+    }
 
+    @PatchMapping("/{id}/locations/{location}/increment")
+    public LocationStockDTO incrementAtLocation(@PathVariable Long id, @PathVariable String location, @RequestBody @Valid QuantityDTO quantityDTO)
+            throws PharmaNotFoundException, PharmaStockExceededException, InvalidLocationException{
+        return locationStockService.increment(id, location, quantityDTO.getQuantity());
+    }
+
+    @PatchMapping("/{id}/locations/{location}/decrement")
+    public LocationStockDTO decrementAtLocation(@PathVariable Long id, @PathVariable String location, @RequestBody @Valid QuantityDTO quantityDTO)
+            throws PharmaNotFoundException, PharmaStockExceededException, InvalidLocationException{
+        return locationStockService.decrement(id, location, quantityDTO.getQuantity());
+    }
+
+    @PostMapping("/{id}/reservations")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ReservationDTO reserve(@PathVariable Long id, @RequestBody @Valid ReservationRequestDTO reservationRequestDTO)
+            throws PharmaNotFoundException, PharmaStockExceededException{
+        return reservationService.reserve(id, reservationRequestDTO.getQuantity(), reservationRequestDTO.getTtlSeconds());
+    }
+
+    @PostMapping("/reservations/{reservationId}:commit")
+    public PharmaDTO commitReservation(@PathVariable String reservationId)
+            throws ReservationNotFoundException, PharmaNotFoundException, PharmaStockExceededException{
+        return reservationService.commit(reservationId);
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void releaseReservation(@PathVariable String reservationId) throws ReservationNotFoundException{
+        reservationService.release(reservationId);
+    }
 
+    @PatchMapping("/stock:batch")
+    public List<StockAdjustmentResultDTO> adjustStockBatch(@RequestBody @Valid StockBatchDTO stockBatchDTO) {
+        return stockBatchService.adjust(stockBatchDTO.getAdjustments());
+    }
+
+    @GetMapping("/{id}/movements")
+    public List<StockMovementDTO> movements(@PathVariable Long id, @PageableDefault(size = 50) Pageable pageable) {
+        return stockMovementService.history(id, pageable).getContent();
+    }
+
+    @PostMapping("/{id}/stock:replay")
+    public PharmaDTO replayStock(@PathVariable Long id) throws PharmaNotFoundException{
+        return stockMovementService.replay(id);
+    }
+
+    private static String etag(long version, ServletWebRequest webRequest){
+        webRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        String accept = webRequest.getHeader(HttpHeaders.ACCEPT);
+        String representation = accept != null && accept.contains(WireFormatConfig.SMILE_VALUE) ? "-smile" : "";
+        return "\"" + version + representation + "\"";
+    }
 }
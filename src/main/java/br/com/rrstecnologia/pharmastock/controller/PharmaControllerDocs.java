@@ -1,18 +1,42 @@
 package br.com.rrstecnologia.pharmastock.controller;
 
+import br.com.rrstecnologia.pharmastock.dto.ImportReportDTO;
+import br.com.rrstecnologia.pharmastock.dto.LocationStockDTO;
+import br.com.rrstecnologia.pharmastock.dto.LocationStockTotalDTO;
+import br.com.rrstecnologia.pharmastock.dto.LowStockDTO;
 import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaFilterDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaSummaryDTO;
 import br.com.rrstecnologia.pharmastock.dto.QuantityDTO;
+import br.com.rrstecnologia.pharmastock.dto.ReservationDTO;
+import br.com.rrstecnologia.pharmastock.dto.ReservationRequestDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentResultDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAggregateDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockBatchDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockMovementDTO;
+import br.com.rrstecnologia.pharmastock.enums.StockAggregateGrouping;
+import br.com.rrstecnologia.pharmastock.exception.InvalidImportFormatException;
+import br.com.rrstecnologia.pharmastock.exception.InvalidLocationException;
+import br.com.rrstecnologia.pharmastock.exception.InvalidReorderPointException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaAlreadyRegisteredException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.exception.ReservationNotFoundException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Api("Manges pharma stock")
@@ -21,22 +45,77 @@ public interface PharmaControllerDocs {
     @ApiOperation(value = "Pharma creation operation")
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "Success pharma creation"),
-            @ApiResponse(code = 400, message = "Missing required fields or wrong field range value.")
+            @ApiResponse(code = 400, message = "Missing required fields, wrong field range value or reorder point above max.")
+    })
+    PharmaDTO createPharma(PharmaDTO beerDTO) throws PharmaAlreadyRegisteredException, InvalidReorderPointException;
+
+    @ApiOperation(value = "Pharma catalog import from a CSV or NDJSON body, streamed and inserted in batches")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Import finished, see the report for rejected rows"),
+            @ApiResponse(code = 400, message = "Missing CSV header or empty body."),
+            @ApiResponse(code = 415, message = "Body is neither text/csv nor application/x-ndjson.")
     })
-    PharmaDTO createPharma(PharmaDTO beerDTO) throws PharmaAlreadyRegisteredException;
+    ImportReportDTO importPharmas(String contentType, InputStream body) throws IOException, InvalidImportFormatException;
+
+    @ApiOperation(value = "Streams the whole pharma catalog as newline delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Catalog streamed, one pharma per line"),
+    })
+    void exportPharmas(HttpServletResponse response) throws IOException;
+
+    @ApiOperation(value = "Typeahead search of pharmas whose name or brand starts with the prefix, ignoring case and accents")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Up to limit matching pharmas, ordered by name")
+    })
+    List<PharmaSummaryDTO> search(String prefix, int limit);
+
+    @ApiOperation(value = "Returns the pharmas at or below their reorder point, most urgent first. " +
+            "With includeNear the pharmas within the near margin above it are listed too")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Up to limit pharmas ordered by quantity above the reorder point")
+    })
+    List<LowStockDTO> lowStock(int limit, boolean includeNear);
+
+    @ApiOperation(value = "Server-Sent Events stream of low stock status changes. Status OK means the pharma left the list")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stream opened, one low-stock event per status change")
+    })
+    SseEmitter lowStockStream();
+
+    @ApiOperation(value = "Server-Sent Events stream of pharma creations, adjustments and deletions. " +
+            "Resumes after the Last-Event-ID header or the since parameter; a reset event means the catalog must be reloaded")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stream opened, one change event per pharma with rapid changes coalesced")
+    })
+    SseEmitter changes(Long lastEventId, Long since);
+
+    @ApiOperation(value = "Returns the number of pharmas and units in stock of each location")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Totals of every location with stock rows, ordered by location")
+    })
+    List<LocationStockTotalDTO> locationTotals();
+
+    @ApiOperation(value = "Returns item count, units in stock, capacity and utilization grouped by type, brand or both")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Totals of every group with at least one pharma")
+    })
+    List<StockAggregateDTO> aggregates(StockAggregateGrouping groupBy);
 
     @ApiOperation(value = "Returns pharma found by a given name")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Success pharma found in the system"),
+            @ApiResponse(code = 304, message = "Pharma not changed since the ETag sent in If-None-Match"),
             @ApiResponse(code = 404, message = "Pharma with given name not found.")
     })
-    PharmaDTO findByName(@PathVariable String name) throws PharmaNotFoundException;
+    PharmaDTO findByName(@PathVariable String name, ServletWebRequest webRequest) throws PharmaNotFoundException;
 
-    @ApiOperation(value = "Returns a list of all pharmas registered in the system")
+    @ApiOperation(value = "Returns a page of pharmas, optionally filtered by type, brand and low stock threshold. " +
+            "When afterId is informed the page is read with keyset pagination ordered by id")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "List of all pharmas registered in the system"),
+            @ApiResponse(code = 200, message = "Page of pharmas registered in the system"),
+            @ApiResponse(code = 304, message = "Catalog not changed since the ETag sent in If-None-Match"),
     })
-    List<PharmaDTO> listPharms();
+    ResponseEntity<List<PharmaDTO>> listPharms(PharmaFilterDTO filter, Pageable pageable, ServletWebRequest webRequest);
 
     @ApiOperation(value = "Delete a pharma found by a given valid Id")
     @ApiResponses(value = {
@@ -60,4 +139,73 @@ public interface PharmaControllerDocs {
             @ApiResponse(code = 404, message = "Pharma with given id not found.")
     })
     PharmaDTO decrement(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws PharmaNotFoundException, PharmaStockExceededException;
+
+    @ApiOperation(value = "Returns the stock of a pharma in each location")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock per location, empty when the pharma has no location stock")
+    })
+    List<LocationStockDTO> locationStock(@PathVariable Long id);
+
+    @ApiOperation(value = "Increment pharma stock in a location, opening the location on its first increment")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success pharma incremented in the location"),
+            @ApiResponse(code = 400, message = "Invalid location or quantity exceeds the location max"),
+            @ApiResponse(code = 404, message = "Pharma with given id not found.")
+    })
+    LocationStockDTO incrementAtLocation(@PathVariable Long id, @PathVariable String location, @RequestBody @Valid QuantityDTO quantityDTO)
+            throws PharmaNotFoundException, PharmaStockExceededException, InvalidLocationException;
+
+    @ApiOperation(value = "Decrement pharma stock in a location")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success pharma decremented in the location"),
+            @ApiResponse(code = 400, message = "Invalid location or not enough stock in the location"),
+            @ApiResponse(code = 404, message = "Pharma with given id not found.")
+    })
+    LocationStockDTO decrementAtLocation(@PathVariable Long id, @PathVariable String location, @RequestBody @Valid QuantityDTO quantityDTO)
+            throws PharmaNotFoundException, PharmaStockExceededException, InvalidLocationException;
+
+    @ApiOperation(value = "Holds units of a pharma for checkout until the reservation is committed, released or expires")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Units held, the response shows what is still available"),
+            @ApiResponse(code = 400, message = "Not enough available stock or wrong field range value."),
+            @ApiResponse(code = 404, message = "Pharma with given id not found.")
+    })
+    ReservationDTO reserve(@PathVariable Long id, @RequestBody @Valid ReservationRequestDTO reservationRequestDTO)
+            throws PharmaNotFoundException, PharmaStockExceededException;
+
+    @ApiOperation(value = "Takes the held units out of stock and ends the reservation")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success pharma decremented by the held quantity"),
+            @ApiResponse(code = 400, message = "Stock fell below the held quantity, the reservation is ended anyway"),
+            @ApiResponse(code = 404, message = "Reservation expired, already ended or pharma deleted.")
+    })
+    PharmaDTO commitReservation(@PathVariable String reservationId)
+            throws ReservationNotFoundException, PharmaNotFoundException, PharmaStockExceededException;
+
+    @ApiOperation(value = "Returns the held units to the available stock")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Reservation released"),
+            @ApiResponse(code = 404, message = "Reservation expired or already ended.")
+    })
+    void releaseReservation(@PathVariable String reservationId) throws ReservationNotFoundException;
+
+    @ApiOperation(value = "Apply a batch of stock adjustments, reporting the outcome of each one")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Batch processed, see the status of each adjustment"),
+            @ApiResponse(code = 400, message = "Missing required fields or wrong field range value.")
+    })
+    List<StockAdjustmentResultDTO> adjustStockBatch(@RequestBody @Valid StockBatchDTO stockBatchDTO);
+
+    @ApiOperation(value = "Returns the stock movements of a pharma, newest first")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Page of stock movements, empty when the pharma has no history")
+    })
+    List<StockMovementDTO> movements(@PathVariable Long id, Pageable pageable);
+
+    @ApiOperation(value = "Rebuilds the quantity of a pharma from its stock movements")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Quantity rebuilt from the ledger"),
+            @ApiResponse(code = 404, message = "Pharma with given id not found.")
+    })
+    PharmaDTO replayStock(@PathVariable Long id) throws PharmaNotFoundException;
 }
@@ -0,0 +1,69 @@
+package br.com.rrstecnologia.pharmastock.controller;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.config.ReadRouting;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * With the read replica enabled, a client that sends a mutation gets a cookie that keeps its reads on
+ * the primary for pharmastock.replica.read-your-writes-window, so it never reads its own write from a
+ * replica that has not replayed it yet. Also clears the per-request ReadRouting state.
+ */
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String PRIMARY_UNTIL_COOKIE = "pharmastock-primary-until";
+
+    private final PharmastockProperties.Replica properties;
+
+    public ReadYourWritesFilter(PharmastockProperties pharmastockProperties) {
+        this.properties = pharmastockProperties.getReplica();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            if (properties.isEnabled()) {
+                route(request, response);
+            }
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadRouting.clear();
+        }
+    }
+
+    private void route(HttpServletRequest request, HttpServletResponse response) {
+        long now = System.currentTimeMillis();
+        Cookie primaryUntil = WebUtils.getCookie(request, PRIMARY_UNTIL_COOKIE);
+        if (primaryUntil != null && parse(primaryUntil.getValue()) > now) {
+            ReadRouting.requirePrimary();
+        }
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            long windowMillis = properties.getReadYourWritesWindow().toMillis();
+            Cookie cookie = new Cookie(PRIMARY_UNTIL_COOKIE, String.valueOf(now + windowMillis));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, properties.getReadYourWritesWindow().getSeconds()));
+            response.addCookie(cookie);
+        }
+    }
+
+    private static long parse(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRejectionDTO {
+
+    private long line;
+
+    private String name;
+
+    private String reason;
+}
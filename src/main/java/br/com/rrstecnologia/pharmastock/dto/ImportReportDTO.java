@@ -0,0 +1,25 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReportDTO {
+
+    private long processed;
+
+    private long imported;
+
+    private long rejected;
+
+    @Builder.Default
+    private List<ImportRejectionDTO> rejections = new ArrayList<>();
+}
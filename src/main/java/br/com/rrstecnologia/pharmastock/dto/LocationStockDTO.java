@@ -0,0 +1,21 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationStockDTO {
+
+    private String location;
+
+    private Long pharmaId;
+
+    private int max;
+
+    private int quantity;
+}
@@ -0,0 +1,26 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import br.com.rrstecnologia.pharmastock.enums.LowStockStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockDTO {
+
+    private Long id;
+
+    private String name;
+
+    private String brand;
+
+    private int quantity;
+
+    private int reorderPoint;
+
+    private LowStockStatus status;
+}
@@ -0,0 +1,37 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Delta sent to change stream subscribers. Name, brand, max and type are only filled for creations,
+ * and quantity is left out for deletions.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PharmaChangeDTO {
+
+    private long sequence;
+
+    private Long id;
+
+    private PharmaChangeType change;
+
+    private Integer quantity;
+
+    private String name;
+
+    private String brand;
+
+    private Integer max;
+
+    private PharmaType type;
+}
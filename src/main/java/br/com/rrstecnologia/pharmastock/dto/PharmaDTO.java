@@ -9,11 +9,12 @@ import lombok.NoArgsConstructor;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class PharmaDTO {
@@ -39,4 +40,7 @@ public class PharmaDTO {
     @Enumerated(EnumType.STRING)
     @NotNull
     private PharmaType type;
+
+    @Min(0)
+    private Integer reorderPoint;
 }
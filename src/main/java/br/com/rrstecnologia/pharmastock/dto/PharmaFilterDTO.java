@@ -0,0 +1,22 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PharmaFilterDTO {
+
+    private PharmaType type;
+
+    private String brand;
+
+    private Integer lowStock;
+
+    private Long afterId;
+}
@@ -0,0 +1,22 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PharmaSummaryDTO {
+
+    private Long id;
+
+    private String name;
+
+    private String brand;
+
+    private PharmaType type;
+}
@@ -0,0 +1,25 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationDTO {
+
+    private String id;
+
+    private Long pharmaId;
+
+    private int quantity;
+
+    private Instant expiresAt;
+
+    private int available;
+}
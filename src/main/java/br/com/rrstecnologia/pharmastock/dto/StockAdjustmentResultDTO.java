@@ -0,0 +1,24 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import br.com.rrstecnologia.pharmastock.enums.StockAdjustmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAdjustmentResultDTO {
+
+    private Long id;
+
+    private Integer delta;
+
+    private StockAdjustmentStatus status;
+
+    private Integer quantity;
+
+    private String message;
+}
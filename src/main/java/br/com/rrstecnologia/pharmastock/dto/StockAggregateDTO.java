@@ -0,0 +1,33 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StockAggregateDTO {
+
+    private PharmaType type;
+
+    private String brand;
+
+    private Long items;
+
+    private Long quantity;
+
+    private Long capacity;
+
+    /**
+     * @return quantity over capacity, or null when the group has no capacity
+     */
+    public Double getUtilization() {
+        return capacity == null || capacity == 0 ? null : (double) quantity / capacity;
+    }
+}
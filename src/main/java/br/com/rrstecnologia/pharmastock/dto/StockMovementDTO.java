@@ -0,0 +1,31 @@
+package br.com.rrstecnologia.pharmastock.dto;
+
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovementDTO {
+
+    private Long id;
+
+    private Long pharmaId;
+
+    private int delta;
+
+    private int quantity;
+
+    private PharmaChangeType type;
+
+    private StockMovementSource source;
+
+    private Instant createdAt;
+}
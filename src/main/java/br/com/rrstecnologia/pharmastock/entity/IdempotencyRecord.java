@@ -0,0 +1,50 @@
+package br.com.rrstecnologia.pharmastock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Response stored for an Idempotency-Key when the persistent store is enabled, shared by every node.
+ * A row without status is a claim by a request still running, held until its lease expires unless the
+ * owning node renews it. Rows are read and written through IdempotencyRecordRepository.
+ */
+@Data
+@Entity
+@Table(name = "idempotency_record", indexes = {
+        @Index(name = "idx_idempotency_record_created_at", columnList = "created_at")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+    @Column(nullable = false, length = 1024)
+    private String fingerprint;
+
+    private Integer status;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    /**
+     * Replayed response headers, one "Name: value" per line.
+     */
+    @Column(length = 2048)
+    private String headers;
+
+    @Column(length = Integer.MAX_VALUE)
+    private byte[] body;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "lease_expires_at")
+    private Instant leaseExpiresAt;
+}
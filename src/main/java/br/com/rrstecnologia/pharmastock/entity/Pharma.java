@@ -1,20 +1,36 @@
 package br.com.rrstecnologia.pharmastock.entity;
 
+import br.com.rrstecnologia.pharmastock.config.SecondLevelCacheConfig;
 import br.com.rrstecnologia.pharmastock.enums.PharmaType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
+/**
+ * Cached read-write: a row being updated is soft-locked in the second-level cache until the
+ * transaction commits, so concurrent stock changes never read a cached quantity that is about to
+ * change, and the committed row replaces the entry afterwards.
+ */
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.PHARMA_REGION)
+@Table(indexes = {
+        @Index(name = "idx_pharma_type", columnList = "type"),
+        @Index(name = "idx_pharma_brand", columnList = "brand"),
+        @Index(name = "idx_pharma_quantity", columnList = "quantity")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Pharma {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pharma_sequence")
+    @SequenceGenerator(name = "pharma_sequence", sequenceName = "pharma_sequence", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -33,4 +49,7 @@ public class Pharma {
     @Column(nullable = false)
     private PharmaType type;
 
+    @Column(nullable = false)
+    private int reorderPoint;
+
 }
@@ -0,0 +1,67 @@
+package br.com.rrstecnologia.pharmastock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Stock of a pharma in one location. Every (location, pharma) pair is its own row, so adjustments in
+ * different stores never touch the same row, and the location leads the key so a store's rows stay
+ * together and the table can be partitioned by it. The rows reference the pharma and are deleted with
+ * it by the database.
+ */
+@Data
+@Entity
+@Table(name = "pharma_stock", indexes = {
+        @Index(name = "idx_pharma_stock_pharma", columnList = "pharma_id")
+})
+@IdClass(PharmaStock.Key.class)
+@NoArgsConstructor
+public class PharmaStock {
+
+    @Id
+    @Column(length = 32)
+    private String location;
+
+    @Id
+    @Column(name = "pharma_id")
+    private Long pharmaId;
+
+    @Column(nullable = false)
+    private int max;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "pharma_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_pharma_stock_pharma"))
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Pharma pharma;
+
+    public PharmaStock(String location, Long pharmaId, int max, int quantity) {
+        this.location = location;
+        this.pharmaId = pharmaId;
+        this.max = max;
+        this.quantity = quantity;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private String location;
+
+        private Long pharmaId;
+    }
+}
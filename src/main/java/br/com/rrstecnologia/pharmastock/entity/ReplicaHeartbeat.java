@@ -0,0 +1,29 @@
+package br.com.rrstecnologia.pharmastock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Single row rewritten on the primary with the current time in microseconds. Reading it back from a
+ * replica tells up to which moment the replica has replayed the primary. Accessed through
+ * ReplicaLagMonitor.
+ */
+@Data
+@Entity
+@Table(name = "replica_heartbeat")
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicaHeartbeat {
+
+    @Id
+    private Integer id;
+
+    @Column(name = "beat_at", nullable = false)
+    private long beatAt;
+}
@@ -0,0 +1,30 @@
+package br.com.rrstecnologia.pharmastock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Last write-behind journal segment whose deltas are in the database, per journal directory. It is
+ * advanced in the same transaction as the deltas, so a segment left on disk by a crash after the
+ * commit is recognised and not applied twice. Accessed through StockDeltaAggregator.
+ */
+@Data
+@Entity
+@Table(name = "stock_journal_watermark")
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockJournalWatermark {
+
+    @Id
+    @Column(length = 1024)
+    private String journal;
+
+    @Column(name = "applied_through", nullable = false)
+    private long appliedThrough;
+}
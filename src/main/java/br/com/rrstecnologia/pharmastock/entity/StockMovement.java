@@ -0,0 +1,51 @@
+package br.com.rrstecnologia.pharmastock.entity;
+
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One row of the append-only stock ledger. Rows are only ever inserted (in batches, through
+ * StockMovementBatchRepository) and keep no foreign key, so the history of a deleted pharma survives it.
+ */
+@Data
+@Entity
+@Immutable
+@Table(name = "stock_movement", indexes = {
+        @Index(name = "idx_stock_movement_pharma", columnList = "pharma_id, id")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "pharma_id", nullable = false)
+    private Long pharmaId;
+
+    @Column(nullable = false)
+    private int delta;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PharmaChangeType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StockMovementSource source;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+}
@@ -0,0 +1,15 @@
+package br.com.rrstecnologia.pharmastock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ExecutionMode {
+
+    PLATFORM("Tomcat worker pool of platform threads"),
+    VIRTUAL("One virtual thread per request, requires Java 21");
+
+    private final String description;
+
+}
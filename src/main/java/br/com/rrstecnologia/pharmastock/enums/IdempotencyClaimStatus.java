@@ -0,0 +1,17 @@
+package br.com.rrstecnologia.pharmastock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum IdempotencyClaimStatus {
+
+    OWNER("First request with the key, it runs and its response is stored"),
+    REPLAY("The key already has a stored response for the same request"),
+    CONFLICT("The key was used for a different request"),
+    IN_PROGRESS("The request that owns the key is still running");
+
+    private final String description;
+
+}
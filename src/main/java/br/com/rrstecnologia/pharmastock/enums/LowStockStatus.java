@@ -0,0 +1,16 @@
+package br.com.rrstecnologia.pharmastock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum LowStockStatus {
+
+    BELOW("At or below the reorder point"),
+    NEAR("Within the near margin above the reorder point"),
+    OK("Above the near margin or without a reorder point");
+
+    private final String description;
+
+}
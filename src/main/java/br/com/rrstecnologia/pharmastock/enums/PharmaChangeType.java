@@ -0,0 +1,16 @@
+package br.com.rrstecnologia.pharmastock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum PharmaChangeType {
+
+    CREATED("Created"),
+    ADJUSTED("Adjusted"),
+    DELETED("Deleted");
+
+    private final String description;
+
+}
@@ -0,0 +1,25 @@
+package br.com.rrstecnologia.pharmastock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+@Getter
+@AllArgsConstructor
+public enum PharmaImportFormat {
+
+    CSV("text/csv"),
+    NDJSON("application/x-ndjson");
+
+    private final String description;
+
+    public static PharmaImportFormat fromContentType(String contentType) {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        for (PharmaImportFormat format : values()) {
+            if (mediaType.isCompatibleWith(MediaType.parseMediaType(format.getDescription()))) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unsupported import content type: %s", contentType));
+    }
+}
@@ -3,6 +3,9 @@ package br.com.rrstecnologia.pharmastock.enums;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+/**
+ * Smile responses carry the type as its ordinal, so new values go at the end.
+ */
 @Getter
 @AllArgsConstructor
 public enum PharmaType {
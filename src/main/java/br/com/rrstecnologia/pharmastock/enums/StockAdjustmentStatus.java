@@ -0,0 +1,16 @@
+package br.com.rrstecnologia.pharmastock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockAdjustmentStatus {
+
+    APPLIED("Applied"),
+    NOT_FOUND("Not found"),
+    STOCK_EXCEEDED("Stock exceeded");
+
+    private final String description;
+
+}
@@ -0,0 +1,16 @@
+package br.com.rrstecnologia.pharmastock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockAggregateGrouping {
+
+    TYPE("Totals per pharma type"),
+    BRAND("Totals per brand"),
+    TYPE_AND_BRAND("Totals per pharma type and brand");
+
+    private final String description;
+
+}
@@ -0,0 +1,19 @@
+package br.com.rrstecnologia.pharmastock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockMovementSource {
+
+    API("Single pharma request"),
+    BATCH("Batch stock adjustment"),
+    IMPORT("Catalog import"),
+    JOURNAL("Write-behind deltas recovered from the journal on startup"),
+    REPLAY("Quantity rebuilt from the ledger"),
+    SNAPSHOT("Opening balance restored from a snapshot");
+
+    private final String description;
+
+}
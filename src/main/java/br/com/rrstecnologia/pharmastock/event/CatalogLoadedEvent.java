@@ -0,0 +1,19 @@
+package br.com.rrstecnologia.pharmastock.event;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Published once at startup with the whole catalog, read either from the latest snapshot (caught up
+ * with the ledger) or from a single table scan. Every in-memory structure warms from it, so the
+ * catalog is read once per boot.
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogLoadedEvent {
+
+    private final List<PharmaDTO> pharmas;
+}
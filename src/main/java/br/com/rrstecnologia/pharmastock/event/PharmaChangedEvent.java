@@ -0,0 +1,46 @@
+package br.com.rrstecnologia.pharmastock.event;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the services whenever a pharma is created, adjusted or deleted. {@code pharma} holds the
+ * state after the change (the last known state for deletions), {@code delta} the change in quantity and
+ * {@code source} the entry point that caused it. {@code writeBehind} marks adjustments acknowledged by the
+ * write-behind aggregator, whose movements are recorded when their deltas are flushed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PharmaChangedEvent {
+
+    private final PharmaChangeType type;
+
+    private final PharmaDTO pharma;
+
+    private final int delta;
+
+    private final StockMovementSource source;
+
+    private final boolean writeBehind;
+
+    public static PharmaChangedEvent created(PharmaDTO pharma, StockMovementSource source) {
+        return new PharmaChangedEvent(PharmaChangeType.CREATED, pharma, pharma.getQuantity(), source, false);
+    }
+
+    public static PharmaChangedEvent adjusted(PharmaDTO pharma, int delta, StockMovementSource source) {
+        return new PharmaChangedEvent(PharmaChangeType.ADJUSTED, pharma, delta, source, false);
+    }
+
+    public static PharmaChangedEvent adjustedWriteBehind(PharmaDTO pharma, int delta, StockMovementSource source) {
+        return new PharmaChangedEvent(PharmaChangeType.ADJUSTED, pharma, delta, source, true);
+    }
+
+    public static PharmaChangedEvent deleted(PharmaDTO pharma, StockMovementSource source) {
+        return new PharmaChangedEvent(PharmaChangeType.DELETED, pharma, -pharma.getQuantity(), source, false);
+    }
+}
@@ -0,0 +1,12 @@
+package br.com.rrstecnologia.pharmastock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImportFormatException extends Exception{
+
+    public InvalidImportFormatException(String message){
+        super(String.format("Catalog import rejected: %s", message));
+    }
+}
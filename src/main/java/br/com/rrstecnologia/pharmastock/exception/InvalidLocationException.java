@@ -0,0 +1,12 @@
+package br.com.rrstecnologia.pharmastock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidLocationException extends Exception{
+
+    public InvalidLocationException(String location){
+        super(String.format("Location %s is invalid, use up to 32 lower case letters, digits or hyphens.", location));
+    }
+}
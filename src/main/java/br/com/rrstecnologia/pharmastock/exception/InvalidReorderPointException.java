@@ -0,0 +1,12 @@
+package br.com.rrstecnologia.pharmastock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidReorderPointException extends Exception{
+
+    public InvalidReorderPointException(int reorderPoint, int max){
+        super(String.format("Reorder point %s is greater than the max stock of %s.", reorderPoint, max));
+    }
+}
@@ -0,0 +1,12 @@
+package br.com.rrstecnologia.pharmastock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ReservationNotFoundException extends Exception{
+
+    public ReservationNotFoundException(String reservationId){
+        super(String.format("Reservation with id %s not found, it may have expired or already been committed or released.", reservationId));
+    }
+}
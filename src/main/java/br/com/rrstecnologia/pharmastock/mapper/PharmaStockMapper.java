@@ -0,0 +1,14 @@
+package br.com.rrstecnologia.pharmastock.mapper;
+
+import br.com.rrstecnologia.pharmastock.dto.LocationStockDTO;
+import br.com.rrstecnologia.pharmastock.entity.PharmaStock;
+import org.mapstruct.Mapper;
+import org.mapstruct.factory.Mappers;
+
+@Mapper
+public interface PharmaStockMapper {
+
+    PharmaStockMapper INSTANCE = Mappers.getMapper(PharmaStockMapper.class);
+
+    LocationStockDTO toDTO(PharmaStock pharmaStock);
+}
@@ -0,0 +1,14 @@
+package br.com.rrstecnologia.pharmastock.mapper;
+
+import br.com.rrstecnologia.pharmastock.dto.StockMovementDTO;
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import org.mapstruct.Mapper;
+import org.mapstruct.factory.Mappers;
+
+@Mapper
+public interface StockMovementMapper {
+
+    StockMovementMapper INSTANCE = Mappers.getMapper(StockMovementMapper.class);
+
+    StockMovementDTO toDTO(StockMovement stockMovement);
+}
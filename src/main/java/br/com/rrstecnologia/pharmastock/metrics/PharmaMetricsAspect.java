@@ -0,0 +1,71 @@
+package br.com.rrstecnologia.pharmastock.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every PharmaService operation (including its transaction commit) and every repository call,
+ * with percentile histograms so latency can be aggregated across instances. Exceptions thrown by the
+ * service are also counted by type.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class PharmaMetricsAspect {
+
+    static final String SERVICE_TIMER = "pharma.service";
+    static final String REPOSITORY_TIMER = "pharma.repository";
+    static final String EXCEPTION_COUNTER = "pharma.service.exceptions";
+    private static final String NONE = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    public PharmaMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * br.com.rrstecnologia.pharmastock.service.PharmaService.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        try {
+            return time(SERVICE_TIMER, joinPoint);
+        } catch (Throwable exception) {
+            Counter.builder(EXCEPTION_COUNTER)
+                    .tag("method", method)
+                    .tag("exception", exception.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+            throw exception;
+        }
+    }
+
+    @Around("this(br.com.rrstecnologia.pharmastock.repository.PharmaRepository) " +
+            "|| execution(public * br.com.rrstecnologia.pharmastock.repository.PharmaStockBatchRepository.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_TIMER, joinPoint);
+    }
+
+    private Object time(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = NONE;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable throwable) {
+            exception = throwable.getClass().getSimpleName();
+            throw throwable;
+        } finally {
+            sample.stop(Timer.builder(name)
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package br.com.rrstecnologia.pharmastock.metrics;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-type stock gauges. Totals are summed from the startup catalog and then follow the change events,
+ * so a scrape never touches the database.
+ */
+@Component
+public class StockLevelMetrics {
+
+    static final String QUANTITY_GAUGE = "pharma.stock.quantity";
+    static final String ITEMS_GAUGE = "pharma.stock.items";
+
+    private final Map<PharmaType, AtomicLong> quantities = new EnumMap<>(PharmaType.class);
+    private final Map<PharmaType, AtomicLong> items = new EnumMap<>(PharmaType.class);
+
+    public StockLevelMetrics(MeterRegistry meterRegistry) {
+        for (PharmaType type : PharmaType.values()) {
+            quantities.put(type, new AtomicLong());
+            items.put(type, new AtomicLong());
+            Gauge.builder(QUANTITY_GAUGE, quantities.get(type), AtomicLong::get)
+                    .tag("type", type.name())
+                    .description("Units in stock for the pharma type")
+                    .register(meterRegistry);
+            Gauge.builder(ITEMS_GAUGE, items.get(type), AtomicLong::get)
+                    .tag("type", type.name())
+                    .description("Registered pharmas of the type")
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener
+    public void onCatalogLoaded(CatalogLoadedEvent event) {
+        Map<PharmaType, long[]> totals = new EnumMap<>(PharmaType.class);
+        for (PharmaType type : PharmaType.values()) {
+            totals.put(type, new long[2]);
+        }
+        for (PharmaDTO pharma : event.getPharmas()) {
+            long[] typeTotals = totals.get(pharma.getType());
+            typeTotals[0] += pharma.getQuantity();
+            typeTotals[1]++;
+        }
+        totals.forEach((type, typeTotals) -> {
+            quantities.get(type).set(typeTotals[0]);
+            items.get(type).set(typeTotals[1]);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPharmaChanged(PharmaChangedEvent event) {
+        PharmaType type = event.getPharma().getType();
+        quantities.get(type).addAndGet(event.getDelta());
+        if (event.getType() == PharmaChangeType.CREATED) {
+            items.get(type).incrementAndGet();
+        } else if (event.getType() == PharmaChangeType.DELETED) {
+            items.get(type).decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.entity.IdempotencyRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Plain JDBC access to idempotency records, so claiming a key is a single insert that fails on the
+ * primary key when another node got there first, and taking over an expired claim is a single
+ * conditional update that only one node can win.
+ */
+@Repository
+public class IdempotencyRecordRepository {
+
+    private static final String INSERT_SQL = "insert into idempotency_record (idempotency_key, fingerprint, created_at, lease_expires_at) values (?, ?, ?, ?)";
+    private static final String SELECT_SQL = "select idempotency_key, fingerprint, status, content_type, headers, body, created_at, lease_expires_at " +
+            "from idempotency_record where idempotency_key = ?";
+    private static final String TAKE_OVER_SQL = "update idempotency_record set lease_expires_at = ? " +
+            "where idempotency_key = ? and fingerprint = ? and status is null and lease_expires_at < ?";
+    private static final String RENEW_SQL = "update idempotency_record set lease_expires_at = ? where idempotency_key = ? and status is null";
+    private static final String COMPLETE_SQL = "update idempotency_record set status = ?, content_type = ?, headers = ?, body = ? where idempotency_key = ?";
+    private static final String DELETE_SQL = "delete from idempotency_record where idempotency_key = ?";
+    private static final String PURGE_SQL = "delete from idempotency_record where created_at < ?";
+
+    private static final RowMapper<IdempotencyRecord> RECORD_ROW_MAPPER = (resultSet, rowNum) -> new IdempotencyRecord(
+            resultSet.getString("idempotency_key"),
+            resultSet.getString("fingerprint"),
+            (Integer) resultSet.getObject("status"),
+            resultSet.getString("content_type"),
+            resultSet.getString("headers"),
+            resultSet.getBytes("body"),
+            resultSet.getTimestamp("created_at").toInstant(),
+            toInstant(resultSet.getTimestamp("lease_expires_at")));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public IdempotencyRecordRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return false when the key is already claimed
+     */
+    public boolean insertPending(String key, String fingerprint, Instant createdAt, Instant leaseExpiresAt) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, key, fingerprint, Timestamp.from(createdAt), Timestamp.from(leaseExpiresAt));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes over a pending claim for the same request whose lease expired, e.g. because its node crashed.
+     *
+     * @return false when the claim was completed, renewed or taken over by another node meanwhile
+     */
+    public boolean takeOverExpired(String key, String fingerprint, Instant now, Instant leaseExpiresAt) {
+        return jdbcTemplate.update(TAKE_OVER_SQL, Timestamp.from(leaseExpiresAt), key, fingerprint, Timestamp.from(now)) == 1;
+    }
+
+    public void renewAll(Collection<String> keys, Instant leaseExpiresAt) {
+        Timestamp lease = Timestamp.from(leaseExpiresAt);
+        jdbcTemplate.batchUpdate(RENEW_SQL, keys.stream()
+                .map(key -> new Object[]{lease, key})
+                .collect(Collectors.toList()));
+    }
+
+    public Optional<IdempotencyRecord> findByKey(String key) {
+        return jdbcTemplate.query(SELECT_SQL, RECORD_ROW_MAPPER, key).stream().findFirst();
+    }
+
+    public void complete(String key, int status, String contentType, String headers, byte[] body) {
+        jdbcTemplate.update(COMPLETE_SQL, status, contentType, headers, body, key);
+    }
+
+    public void delete(String key) {
+        jdbcTemplate.update(DELETE_SQL, key);
+    }
+
+    public int deleteCreatedBefore(Instant createdAt) {
+        return jdbcTemplate.update(PURGE_SQL, Timestamp.from(createdAt));
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+}
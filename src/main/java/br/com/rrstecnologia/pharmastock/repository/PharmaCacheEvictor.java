@@ -0,0 +1,47 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.config.SecondLevelCacheConfig;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import org.hibernate.Cache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collection;
+
+/**
+ * Keeps the second-level cache in step with the plain JDBC writers, which Hibernate does not see.
+ * What they touch is evicted right away and again once the transaction completes, the same way
+ * Hibernate cleans up after its own bulk updates, so rows loaded while the write was uncommitted do
+ * not stay cached.
+ */
+@Component
+public class PharmaCacheEvictor {
+
+    private final Cache cache;
+
+    public PharmaCacheEvictor(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.getCache().unwrap(Cache.class);
+    }
+
+    public void evictPharmas(Collection<Long> ids) {
+        evictNowAndAfterCompletion(() -> ids.forEach(id -> cache.evictEntityData(Pharma.class, id)));
+    }
+
+    public void evictNameLookups() {
+        evictNowAndAfterCompletion(() -> cache.evictQueryRegion(SecondLevelCacheConfig.PHARMA_BY_NAME_REGION));
+    }
+
+    private static void evictNowAndAfterCompletion(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Whole-catalog reads and writes used by snapshots and warm restarts, done with plain JDBC so half a
+ * million rows never pass through the persistence context.
+ */
+@Repository
+public class PharmaCatalogRepository {
+
+    private static final String SELECT_ALL_SQL = "select id, name, brand, max, quantity, type, reorder_point from pharma order by id";
+    private static final String INSERT_SQL = "insert into pharma (id, name, brand, max, quantity, type, reorder_point) values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String COUNT_SQL = "select count(*) from pharma";
+    private static final String RESTART_SEQUENCE_SQL = "alter sequence pharma_sequence restart with %d";
+    private static final int FETCH_SIZE = 1000;
+
+    private static final RowMapper<PharmaDTO> PHARMA_ROW_MAPPER = (resultSet, rowNum) -> new PharmaDTO(
+            resultSet.getLong("id"),
+            resultSet.getString("name"),
+            resultSet.getString("brand"),
+            resultSet.getInt("max"),
+            resultSet.getInt("quantity"),
+            PharmaType.valueOf(resultSet.getString("type")),
+            resultSet.getInt("reorder_point"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final PharmaCacheEvictor pharmaCacheEvictor;
+
+    @Autowired
+    public PharmaCatalogRepository(JdbcTemplate jdbcTemplate, PharmaCacheEvictor pharmaCacheEvictor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pharmaCacheEvictor = pharmaCacheEvictor;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    public List<PharmaDTO> findAll() {
+        return streamingJdbcTemplate.query(SELECT_ALL_SQL, PHARMA_ROW_MAPPER);
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForObject(COUNT_SQL, Long.class) == 0;
+    }
+
+    public int[] insertAll(List<PharmaDTO> pharmas) {
+        pharmaCacheEvictor.evictNameLookups();
+        return jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                PharmaDTO pharma = pharmas.get(i);
+                ps.setLong(1, pharma.getId());
+                ps.setString(2, pharma.getName());
+                ps.setString(3, pharma.getBrand());
+                ps.setInt(4, pharma.getMax());
+                ps.setInt(5, pharma.getQuantity());
+                ps.setString(6, pharma.getType().name());
+                ps.setInt(7, pharma.getReorderPoint());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return pharmas.size();
+            }
+        });
+    }
+
+    /**
+     * Moves the id sequence past restored rows. The pooled generator hands out the block ending at the
+     * value it reads, so the restart leaves one full allocation of headroom.
+     */
+    public void restartSequenceAfter(long maxId, int allocationSize) {
+        jdbcTemplate.execute(String.format(RESTART_SEQUENCE_SQL, maxId + allocationSize + 1));
+    }
+}
@@ -1,12 +1,81 @@
 package br.com.rrstecnologia.pharmastock.repository;
 
+import br.com.rrstecnologia.pharmastock.config.SecondLevelCacheConfig;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAggregateDTO;
 import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface PharmaRepository extends JpaRepository<Pharma, Long> {
 
+    String FILTER = "(:type is null or p.type = :type) " +
+            "and (:brand is null or p.brand = :brand) " +
+            "and (:lowStock is null or p.quantity <= :lowStock)";
+
+    /**
+     * Rows are read straight into the response DTO, so listing a page creates neither managed entities
+     * nor their dirty-checking snapshots, and no mapper copy.
+     */
+    String SELECT_DTO = "select new br.com.rrstecnologia.pharmastock.dto.PharmaDTO(" +
+            "p.id, p.name, p.brand, p.max, p.quantity, p.type, p.reorderPoint) from Pharma p ";
+
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = SecondLevelCacheConfig.PHARMA_BY_NAME_REGION)
+    })
     Optional<Pharma> findByName(String name);
 
+    @Query("select p.name from Pharma p where p.name in :names")
+    Set<String> findExistingNames(@Param("names") Collection<String> names);
+
+    @Query(value = SELECT_DTO + "where " + FILTER,
+            countQuery = "select count(p) from Pharma p where " + FILTER)
+    Page<PharmaDTO> findFiltered(@Param("type") PharmaType type,
+                                 @Param("brand") String brand,
+                                 @Param("lowStock") Integer lowStock,
+                                 Pageable pageable);
+
+    @Query(SELECT_DTO + "where p.id > :afterId and " + FILTER + " order by p.id")
+    List<PharmaDTO> findFilteredAfter(@Param("type") PharmaType type,
+                                      @Param("brand") String brand,
+                                      @Param("lowStock") Integer lowStock,
+                                      @Param("afterId") Long afterId,
+                                      Pageable pageable);
+
+    @Query("select new br.com.rrstecnologia.pharmastock.dto.StockAggregateDTO(p.type, p.brand, count(p), sum(p.quantity), sum(p.max)) " +
+            "from Pharma p group by p.type, p.brand")
+    List<StockAggregateDTO> sumByTypeAndBrand();
+
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheMode", value = "IGNORE")
+    })
+    @Query("select p from Pharma p order by p.id")
+    Stream<Pharma> streamAll();
+
+    /**
+     * Locks the row while its quantity is rebuilt from the ledger, read for a reservation hold or while a
+     * location is opened for it. Stock adjustments do not take it; they go through the conditional
+     * update of PharmaStockBatchRepository.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Pharma p where p.id = :id")
+    Optional<Pharma> findByIdForUpdate(@Param("id") Long id);
+
 }
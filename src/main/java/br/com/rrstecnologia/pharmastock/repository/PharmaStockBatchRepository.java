@@ -0,0 +1,61 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentDTO;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+@Repository
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class PharmaStockBatchRepository {
+
+    private static final String ADJUST_QUANTITY_SQL = "update pharma set quantity = quantity + ? " +
+            "where id = ? and quantity + ? >= ? and quantity + ? <= max";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PharmaCacheEvictor pharmaCacheEvictor;
+
+    /**
+     * Applies one delta and its bounds check in a single statement, so concurrent adjustments of a pharma
+     * can neither overwrite each other nor push it under the floor. The cached row is evicted instead of
+     * dropping the whole Pharma region, as a JPQL bulk update would.
+     */
+    public int adjustQuantity(Long id, int delta, int floor) {
+        pharmaCacheEvictor.evictPharmas(Collections.singleton(id));
+        return jdbcTemplate.update(ADJUST_QUANTITY_SQL, delta, id, delta, floor, delta);
+    }
+
+    /**
+     * @param floor quantity each adjustment may not take its pharma below, e.g. the units held by reservations
+     */
+    public int[] adjustQuantities(List<StockAdjustmentDTO> adjustments, ToIntFunction<StockAdjustmentDTO> floor) {
+        pharmaCacheEvictor.evictPharmas(adjustments.stream()
+                .map(StockAdjustmentDTO::getId)
+                .collect(Collectors.toSet()));
+        return jdbcTemplate.batchUpdate(ADJUST_QUANTITY_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                StockAdjustmentDTO adjustment = adjustments.get(i);
+                ps.setInt(1, adjustment.getDelta());
+                ps.setLong(2, adjustment.getId());
+                ps.setInt(3, adjustment.getDelta());
+                ps.setInt(4, floor.applyAsInt(adjustment));
+                ps.setInt(5, adjustment.getDelta());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return adjustments.size();
+            }
+        });
+    }
+}
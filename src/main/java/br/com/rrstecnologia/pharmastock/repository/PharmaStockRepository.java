@@ -0,0 +1,30 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.dto.LocationStockTotalDTO;
+import br.com.rrstecnologia.pharmastock.entity.PharmaStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface PharmaStockRepository extends JpaRepository<PharmaStock, PharmaStock.Key> {
+
+    List<PharmaStock> findByPharmaIdOrderByLocation(Long pharmaId);
+
+    @Query("select new br.com.rrstecnologia.pharmastock.dto.LocationStockTotalDTO(s.location, count(s), coalesce(sum(s.quantity), 0)) " +
+            "from PharmaStock s group by s.location order by s.location")
+    List<LocationStockTotalDTO> sumByLocation();
+
+    /**
+     * @return 1 when the delta was applied, 0 when the location has no row for the pharma or the result falls outside 0..max
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update PharmaStock s set s.quantity = s.quantity + :delta " +
+            "where s.location = :location and s.pharmaId = :pharmaId " +
+            "and s.quantity + :delta >= 0 and s.quantity + :delta <= s.max")
+    int adjustQuantity(@Param("location") String location, @Param("pharmaId") Long pharmaId, @Param("delta") int delta);
+}
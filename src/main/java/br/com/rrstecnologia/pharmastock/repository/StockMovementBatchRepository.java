@@ -0,0 +1,43 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockMovementBatchRepository {
+
+    private static final String INSERT_SQL = "insert into stock_movement (pharma_id, delta, quantity, type, source, created_at) " +
+            "values (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int[] insertAll(List<StockMovement> movements) {
+        return jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                StockMovement movement = movements.get(i);
+                ps.setLong(1, movement.getPharmaId());
+                ps.setInt(2, movement.getDelta());
+                ps.setInt(3, movement.getQuantity());
+                ps.setString(4, movement.getType().name());
+                ps.setString(5, movement.getSource().name());
+                ps.setTimestamp(6, Timestamp.from(movement.getCreatedAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return movements.size();
+            }
+        });
+    }
+}
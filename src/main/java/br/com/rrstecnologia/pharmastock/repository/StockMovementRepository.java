@@ -0,0 +1,24 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+
+    Slice<StockMovement> findByPharmaIdOrderByIdDesc(Long pharmaId, Pageable pageable);
+
+    @Query("select coalesce(sum(m.delta), 0) from StockMovement m where m.pharmaId = :pharmaId")
+    long sumDeltas(@Param("pharmaId") Long pharmaId);
+
+    @Query("select coalesce(max(m.id), 0) from StockMovement m")
+    long findLastId();
+
+    @Query("select distinct m.pharmaId from StockMovement m where m.id > :afterId")
+    List<Long> findPharmaIdsChangedAfter(@Param("afterId") long afterId);
+}
@@ -0,0 +1,214 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaCatalogRepository;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementBatchRepository;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the catalog once at startup and, when snapshots are enabled, keeps a binary snapshot of it
+ * on disk. On start the latest snapshot either restores an empty database (in-memory H2) or, when the
+ * table already has rows, is caught up by re-reading only the pharmas with ledger movements after it
+ * was taken, instead of scanning the whole table. "After" is by movement id rather than by timestamp:
+ * the ledger inserts its movements right before commit, so clock skew between nodes and the length of
+ * a transaction do not matter, only the instant between that insert and the commit.
+ */
+@Slf4j
+@Service
+public class CatalogSnapshotService {
+
+    private static final String SNAPSHOT_FILE = "pharma-snapshot.bin";
+    private static final int CHUNK_SIZE = 1000;
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    private final PharmaCatalogRepository pharmaCatalogRepository;
+    private final PharmaRepository pharmaRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final StockMovementBatchRepository stockMovementBatchRepository;
+    private final StockDeltaAggregator stockDeltaAggregator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final PharmastockProperties.Snapshot properties;
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    private ScheduledExecutorService scheduler;
+
+    public CatalogSnapshotService(PharmaCatalogRepository pharmaCatalogRepository,
+                                  PharmaRepository pharmaRepository,
+                                  StockMovementRepository stockMovementRepository,
+                                  StockMovementBatchRepository stockMovementBatchRepository,
+                                  StockDeltaAggregator stockDeltaAggregator,
+                                  ApplicationEventPublisher eventPublisher,
+                                  PlatformTransactionManager transactionManager,
+                                  PharmastockProperties pharmastockProperties) {
+        this.pharmaCatalogRepository = pharmaCatalogRepository;
+        this.pharmaRepository = pharmaRepository;
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockMovementBatchRepository = stockMovementBatchRepository;
+        this.stockDeltaAggregator = stockDeltaAggregator;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = pharmastockProperties.getSnapshot();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        long start = System.nanoTime();
+        List<PharmaDTO> pharmas = load();
+        log.info("Catalog of {} pharmas loaded in {} ms", pharmas.size(), (System.nanoTime() - start) / 1_000_000);
+        eventPublisher.publishEvent(new CatalogLoadedEvent(pharmas));
+        if (properties.isEnabled()) {
+            long intervalMillis = properties.getInterval().toMillis();
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "catalog-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::takeSnapshotQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            takeSnapshot();
+        }
+    }
+
+    public synchronized void takeSnapshot() throws IOException {
+        Instant takenAt = Instant.now();
+        long lastMovementId = stockMovementRepository.findLastId();
+        List<PharmaDTO> pharmas = pharmaCatalogRepository.findAll();
+        pharmas.forEach(stockDeltaAggregator::applyPendingQuantity);
+        PharmaSnapshotFile.write(snapshotFile(), new PharmaSnapshotFile.Snapshot(takenAt, lastMovementId, pharmas));
+        log.debug("Snapshot of {} pharmas written up to movement {}", pharmas.size(), lastMovementId);
+    }
+
+    /**
+     * A replay rewrites a quantity without recording a movement, so the catch-up would not see it. The
+     * snapshot is dropped before the replay commits and again once it completes, which also discards
+     * one written concurrently from rows read before the commit; the next interval writes a fresh one.
+     */
+    @EventListener
+    public void onPharmaChanged(PharmaChangedEvent event) {
+        if (!properties.isEnabled() || event.getSource() != StockMovementSource.REPLAY) {
+            return;
+        }
+        try {
+            discardSnapshot();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        discardSnapshot();
+                    } catch (IOException e) {
+                        log.warn("Could not discard the catalog snapshot", e);
+                    }
+                }
+            });
+        }
+    }
+
+    private synchronized void discardSnapshot() throws IOException {
+        Files.deleteIfExists(snapshotFile());
+    }
+
+    private void takeSnapshotQuietly() {
+        try {
+            takeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write the catalog snapshot", e);
+        }
+    }
+
+    private List<PharmaDTO> load() throws IOException {
+        Optional<PharmaSnapshotFile.Snapshot> snapshot = properties.isEnabled()
+                ? PharmaSnapshotFile.read(snapshotFile())
+                : Optional.empty();
+        if (!snapshot.isPresent()) {
+            return pharmaCatalogRepository.findAll();
+        }
+        if (pharmaCatalogRepository.isEmpty()) {
+            restore(snapshot.get().getPharmas());
+            return snapshot.get().getPharmas();
+        }
+        return catchUp(snapshot.get());
+    }
+
+    /**
+     * Inserts the snapshot rows keeping their ids, moves the id sequence past them and records each
+     * quantity as an opening movement so replaying the ledger still adds up.
+     */
+    private void restore(List<PharmaDTO> pharmas) {
+        Instant restoredAt = Instant.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < pharmas.size(); from += CHUNK_SIZE) {
+                List<PharmaDTO> chunk = pharmas.subList(from, Math.min(from + CHUNK_SIZE, pharmas.size()));
+                pharmaCatalogRepository.insertAll(chunk);
+                stockMovementBatchRepository.insertAll(chunk.stream()
+                        .map(pharma -> new StockMovement(null, pharma.getId(), pharma.getQuantity(), pharma.getQuantity(),
+                                PharmaChangeType.CREATED, StockMovementSource.SNAPSHOT, restoredAt))
+                        .collect(Collectors.toList()));
+            }
+            long maxId = pharmas.stream().mapToLong(PharmaDTO::getId).max().orElse(0L);
+            pharmaCatalogRepository.restartSequenceAfter(maxId, ID_ALLOCATION_SIZE);
+        });
+        log.info("Restored {} pharmas from the snapshot", pharmas.size());
+    }
+
+    private List<PharmaDTO> catchUp(PharmaSnapshotFile.Snapshot snapshot) {
+        List<Long> changedIds = stockMovementRepository.findPharmaIdsChangedAfter(snapshot.getLastMovementId());
+        Map<Long, PharmaDTO> pharmas = new LinkedHashMap<>();
+        snapshot.getPharmas().forEach(pharma -> pharmas.put(pharma.getId(), pharma));
+        changedIds.forEach(pharmas::remove);
+        for (int from = 0; from < changedIds.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = changedIds.subList(from, Math.min(from + CHUNK_SIZE, changedIds.size()));
+            pharmaRepository.findAllById(chunk).forEach(pharma -> pharmas.put(pharma.getId(), pharmaMapper.toDTO(pharma)));
+        }
+        log.info("Snapshot caught up with {} pharmas changed after movement {}", changedIds.size(), snapshot.getLastMovementId());
+        return new ArrayList<>(pharmas.values());
+    }
+
+    private Path snapshotFile() {
+        return Paths.get(properties.getDirectory(), SNAPSHOT_FILE);
+    }
+}
@@ -0,0 +1,235 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.entity.IdempotencyRecord;
+import br.com.rrstecnologia.pharmastock.enums.IdempotencyClaimStatus;
+import br.com.rrstecnologia.pharmastock.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Dedupe store for Idempotency-Key requests. Keys live in a bounded Caffeine cache that expires them
+ * after the ttl, so a lookup is an in-memory hash probe. The first request for a key owns it until it
+ * completes; a retry arriving meanwhile on the same node waits for the outcome. With the persistent
+ * store enabled the claim is also inserted in the database, so the key is owned once across nodes. That
+ * claim carries a short lease the owning node keeps renewing while the request runs; if the node dies,
+ * the lease runs out and a retry on another node takes the key over instead of waiting for the purge.
+ */
+@Slf4j
+@Service
+public class IdempotencyStore {
+
+    private final Cache<String, Entry> entries;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final PharmastockProperties.Idempotency properties;
+    private final Set<String> ownedKeys = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository, PharmastockProperties pharmastockProperties) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.properties = pharmastockProperties.getIdempotency();
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isPersistent()) {
+            return;
+        }
+        long intervalMillis = properties.getPurgeInterval().toMillis();
+        long renewMillis = properties.getClaimLease().toMillis() / 3;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purge, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::renewLeases, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    public Claim claim(String key, String fingerprint) throws InterruptedException {
+        while (true) {
+            Entry entry = new Entry(fingerprint);
+            Entry existing = entries.asMap().putIfAbsent(key, entry);
+            if (existing == null) {
+                return properties.isPersistent() ? claimPersistent(key, entry) : new Claim(IdempotencyClaimStatus.OWNER, key, entry, null);
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                return new Claim(IdempotencyClaimStatus.CONFLICT, key, null, null);
+            }
+            StoredResponse response;
+            try {
+                response = existing.response.get(properties.getInFlightWait().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return new Claim(IdempotencyClaimStatus.IN_PROGRESS, key, null, null);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            if (response != null) {
+                return new Claim(IdempotencyClaimStatus.REPLAY, key, null, response);
+            }
+        }
+    }
+
+    public void complete(Claim claim, StoredResponse response) {
+        if (properties.isPersistent()) {
+            idempotencyRecordRepository.complete(claim.key, response.getStatus(), response.getContentType(),
+                    encodeHeaders(response.getHeaders()), response.getBody());
+            ownedKeys.remove(claim.key);
+        }
+        claim.entry.response.complete(response);
+    }
+
+    public void abandon(Claim claim) {
+        if (properties.isPersistent()) {
+            idempotencyRecordRepository.delete(claim.key);
+            ownedKeys.remove(claim.key);
+        }
+        release(claim.key, claim.entry);
+    }
+
+    private Claim claimPersistent(String key, Entry entry) {
+        Instant now = Instant.now();
+        Instant leaseExpiresAt = now.plus(properties.getClaimLease());
+        if (idempotencyRecordRepository.insertPending(key, entry.fingerprint, now, leaseExpiresAt)) {
+            ownedKeys.add(key);
+            return new Claim(IdempotencyClaimStatus.OWNER, key, entry, null);
+        }
+        Optional<IdempotencyRecord> record = idempotencyRecordRepository.findByKey(key);
+        if (record.isPresent() && record.get().getStatus() == null && isExpired(record.get(), now)
+                && idempotencyRecordRepository.takeOverExpired(key, entry.fingerprint, now, leaseExpiresAt)) {
+            log.info("Took over the expired claim for idempotency key {}", key);
+            ownedKeys.add(key);
+            return new Claim(IdempotencyClaimStatus.OWNER, key, entry, null);
+        }
+        if (record.isPresent() && record.get().getStatus() != null && record.get().getFingerprint().equals(entry.fingerprint)) {
+            StoredResponse response = new StoredResponse(record.get().getStatus(), record.get().getContentType(),
+                    decodeHeaders(record.get().getHeaders()), record.get().getBody());
+            entry.response.complete(response);
+            return new Claim(IdempotencyClaimStatus.REPLAY, key, null, response);
+        }
+        release(key, entry);
+        if (record.isPresent() && !record.get().getFingerprint().equals(entry.fingerprint)) {
+            return new Claim(IdempotencyClaimStatus.CONFLICT, key, null, null);
+        }
+        return new Claim(IdempotencyClaimStatus.IN_PROGRESS, key, null, null);
+    }
+
+    private void release(String key, Entry entry) {
+        entries.asMap().remove(key, entry);
+        entry.response.complete(null);
+    }
+
+    private static String encodeHeaders(Map<String, String> headers) {
+        StringBuilder encoded = new StringBuilder();
+        headers.forEach((name, value) -> encoded.append(name).append(": ").append(value).append('\n'));
+        return encoded.toString();
+    }
+
+    private static Map<String, String> decodeHeaders(String encoded) {
+        if (encoded == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String line : encoded.split("\n")) {
+            int separator = line.indexOf(": ");
+            if (separator > 0) {
+                headers.put(line.substring(0, separator), line.substring(separator + 2));
+            }
+        }
+        return headers;
+    }
+
+    private static boolean isExpired(IdempotencyRecord record, Instant now) {
+        return record.getLeaseExpiresAt() != null && record.getLeaseExpiresAt().isBefore(now);
+    }
+
+    private void renewLeases() {
+        if (ownedKeys.isEmpty()) {
+            return;
+        }
+        try {
+            idempotencyRecordRepository.renewAll(new ArrayList<>(ownedKeys), Instant.now().plus(properties.getClaimLease()));
+        } catch (RuntimeException e) {
+            log.warn("Could not renew idempotency claim leases", e);
+        }
+    }
+
+    private void purge() {
+        try {
+            int purged = idempotencyRecordRepository.deleteCreatedBefore(Instant.now().minus(properties.getTtl()));
+            log.debug("Purged {} expired idempotency records", purged);
+        } catch (RuntimeException e) {
+            log.warn("Could not purge expired idempotency records", e);
+        }
+    }
+
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Claim {
+
+        @Getter
+        private final IdempotencyClaimStatus status;
+
+        private final String key;
+
+        private final Entry entry;
+
+        @Getter
+        private final StoredResponse response;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class StoredResponse {
+
+        private final int status;
+
+        private final String contentType;
+
+        private final Map<String, String> headers;
+
+        private final byte[] body;
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
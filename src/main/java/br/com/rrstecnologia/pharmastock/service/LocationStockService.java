@@ -0,0 +1,103 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.dto.LocationStockDTO;
+import br.com.rrstecnologia.pharmastock.dto.LocationStockTotalDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.entity.PharmaStock;
+import br.com.rrstecnologia.pharmastock.exception.InvalidLocationException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaStockMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.PharmaStockRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Per-location stock. A location row is opened on its first increment with the catalog max of the
+ * pharma, and each adjustment is a conditional update of that single row.
+ * <p>
+ * Location stock is a ledger of its own, separate from the catalog quantity: adjustments publish no
+ * change events, are not recorded as stock movements and do not see reservation holds, which all
+ * apply to the catalog quantity only.
+ */
+@Service
+public class LocationStockService {
+
+    private static final Pattern LOCATION_PATTERN = Pattern.compile("[a-z0-9-]{1,32}");
+
+    private final PharmaStockRepository pharmaStockRepository;
+    private final PharmaRepository pharmaRepository;
+    private final PharmaStockMapper pharmaStockMapper = PharmaStockMapper.INSTANCE;
+
+    public LocationStockService(PharmaStockRepository pharmaStockRepository, PharmaRepository pharmaRepository) {
+        this.pharmaStockRepository = pharmaStockRepository;
+        this.pharmaRepository = pharmaRepository;
+    }
+
+    @Transactional
+    public LocationStockDTO increment(Long pharmaId, String location, int quantityToIncrement)
+            throws PharmaNotFoundException, PharmaStockExceededException, InvalidLocationException {
+        return adjustStock(pharmaId, location, quantityToIncrement);
+    }
+
+    @Transactional
+    public LocationStockDTO decrement(Long pharmaId, String location, int quantityToDecrement)
+            throws PharmaNotFoundException, PharmaStockExceededException, InvalidLocationException {
+        return adjustStock(pharmaId, location, -quantityToDecrement);
+    }
+
+    public List<LocationStockDTO> findByPharma(Long pharmaId) {
+        return pharmaStockRepository.findByPharmaIdOrderByLocation(pharmaId).stream()
+                .map(pharmaStockMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    public List<LocationStockTotalDTO> totalsByLocation() {
+        return pharmaStockRepository.sumByLocation();
+    }
+
+    private LocationStockDTO adjustStock(Long pharmaId, String location, int delta)
+            throws PharmaNotFoundException, PharmaStockExceededException, InvalidLocationException {
+        verifyLocation(location);
+        PharmaStock.Key key = new PharmaStock.Key(location, pharmaId);
+        int updated = pharmaStockRepository.adjustQuantity(location, pharmaId, delta);
+        if (updated == 0 && !pharmaStockRepository.existsById(key)) {
+            if (delta > 0) {
+                Pharma pharma = pharmaRepository.findByIdForUpdate(pharmaId)
+                        .orElseThrow(() -> new PharmaNotFoundException(pharmaId));
+                openLocation(pharma, key);
+                updated = pharmaStockRepository.adjustQuantity(location, pharmaId, delta);
+            } else if (!pharmaRepository.existsById(pharmaId)) {
+                throw new PharmaNotFoundException(pharmaId);
+            }
+        }
+        if (updated == 0) {
+            throw new PharmaStockExceededException(pharmaId, Math.abs(delta));
+        }
+        return pharmaStockRepository.findById(key)
+                .map(pharmaStockMapper::toDTO)
+                .orElseThrow(() -> new PharmaNotFoundException(pharmaId));
+    }
+
+    /**
+     * Inserts the empty row in the caller's transaction while it holds the pharma's row lock: concurrent
+     * openings wait for each other and find the row already there, a pharma being deleted cannot get a
+     * row back, and a failed increment leaves no empty row behind.
+     */
+    private void openLocation(Pharma pharma, PharmaStock.Key key) {
+        if (!pharmaStockRepository.existsById(key)) {
+            pharmaStockRepository.saveAndFlush(new PharmaStock(key.getLocation(), pharma.getId(), pharma.getMax(), 0));
+        }
+    }
+
+    private static void verifyLocation(String location) throws InvalidLocationException {
+        if (!LOCATION_PATTERN.matcher(location).matches()) {
+            throw new InvalidLocationException(location);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.LowStockDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.LowStockStatus;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the pharmas at or near their reorder point ordered by how far they are above it, so the
+ * most urgent ones are always at the head. Only items within the near margin are held, the set is
+ * updated from each change event, and status transitions are pushed to the connected streams.
+ */
+@Slf4j
+@Service
+public class LowStockMonitor {
+
+    static final String STREAM_EVENT_NAME = "low-stock";
+    private static final int MAX_LIMIT = 500;
+
+    private static final Comparator<LowStockDTO> BY_MARGIN = Comparator
+            .comparingInt((LowStockDTO entry) -> entry.getQuantity() - entry.getReorderPoint())
+            .thenComparing(LowStockDTO::getId);
+
+    private final int nearMargin;
+    private final long streamTimeoutMillis;
+    private final Map<Long, LowStockDTO> entries = new HashMap<>();
+    private final ConcurrentSkipListSet<LowStockDTO> ranking = new ConcurrentSkipListSet<>(BY_MARGIN);
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor notifier;
+
+    public LowStockMonitor(PharmastockProperties pharmastockProperties) {
+        PharmastockProperties.LowStock properties = pharmastockProperties.getLowStock();
+        this.nearMargin = properties.getNearMargin();
+        this.streamTimeoutMillis = properties.getStreamTimeout().toMillis();
+        this.notifier = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getPendingNotifications()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "low-stock-notifier");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        notifier.shutdownNow();
+        emitters.forEach(SseEmitter::complete);
+    }
+
+    @EventListener
+    public synchronized void onCatalogLoaded(CatalogLoadedEvent event) {
+        entries.clear();
+        ranking.clear();
+        for (PharmaDTO pharma : event.getPharmas()) {
+            LowStockDTO entry = toEntry(pharma);
+            if (entry.getStatus() != LowStockStatus.OK) {
+                entries.put(entry.getId(), entry);
+                ranking.add(entry);
+            }
+        }
+        log.info("Low stock monitor tracking {} pharmas", entries.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPharmaChanged(PharmaChangedEvent event) {
+        LowStockDTO entry = toEntry(event.getPharma());
+        if (event.getType() == PharmaChangeType.DELETED) {
+            entry.setStatus(LowStockStatus.OK);
+        }
+        LowStockStatus previousStatus;
+        synchronized (this) {
+            LowStockDTO previous = entries.remove(entry.getId());
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            previousStatus = previous == null ? LowStockStatus.OK : previous.getStatus();
+            if (entry.getStatus() != LowStockStatus.OK) {
+                entries.put(entry.getId(), entry);
+                ranking.add(entry);
+            }
+        }
+        if (previousStatus != entry.getStatus()) {
+            notifier.execute(() -> broadcast(entry));
+        }
+    }
+
+    /**
+     * Walks the ranking from the head, so the cost is proportional to the returned items.
+     */
+    public List<LowStockDTO> lowStock(int limit, boolean includeNear) {
+        int maxResults = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<LowStockDTO> results = new ArrayList<>(Math.min(maxResults, ranking.size()));
+        for (LowStockDTO entry : ranking) {
+            if (results.size() == maxResults || (!includeNear && entry.getStatus() != LowStockStatus.BELOW)) {
+                break;
+            }
+            results.add(entry);
+        }
+        return results;
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(streamTimeoutMillis));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(error -> emitters.remove(emitter));
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    private void broadcast(LowStockDTO entry) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(STREAM_EVENT_NAME).data(entry));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private LowStockDTO toEntry(PharmaDTO pharma) {
+        int reorderPoint = pharma.getReorderPoint() == null ? 0 : pharma.getReorderPoint();
+        return new LowStockDTO(pharma.getId(), pharma.getName(), pharma.getBrand(), pharma.getQuantity(),
+                reorderPoint, status(pharma.getQuantity(), reorderPoint));
+    }
+
+    private LowStockStatus status(int quantity, int reorderPoint) {
+        if (reorderPoint <= 0) {
+            return LowStockStatus.OK;
+        }
+        if (quantity <= reorderPoint) {
+            return LowStockStatus.BELOW;
+        }
+        return quantity <= reorderPoint + nearMargin ? LowStockStatus.NEAR : LowStockStatus.OK;
+    }
+}
@@ -0,0 +1,229 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaChangeDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans committed pharma changes out to SSE subscribers. Every change gets a sequence number and is kept
+ * in a ring buffer so a reconnecting subscriber can resume after the last sequence it saw. Each
+ * subscriber has a bounded buffer where quantity changes to the same id collapse into the latest one,
+ * and into a pending creation, which keeps its fields; creations and deletions are never merged into
+ * anything else. A subscriber that falls too far behind, or asks to resume from a sequence no longer retained, gets a
+ * reset event and should reload the catalog before applying further changes.
+ */
+@Slf4j
+@Service
+public class PharmaChangeStream {
+
+    static final String CHANGE_EVENT_NAME = "change";
+    static final String RESET_EVENT_NAME = "reset";
+
+    private final int bufferSize;
+    private final long coalesceWindowMillis;
+    private final long timeoutMillis;
+    private final PharmaChangeDTO[] retained;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService dispatcher;
+
+    /**
+     * Starts from the boot time in microseconds, so sequences handed out by a previous run are always
+     * older than anything retained here and resuming from them triggers a reset.
+     */
+    private final long firstSequence = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private long sequence = firstSequence;
+
+    public PharmaChangeStream(PharmastockProperties pharmastockProperties) {
+        PharmastockProperties.ChangeStream properties = pharmastockProperties.getChangeStream();
+        this.bufferSize = properties.getBufferSize();
+        this.coalesceWindowMillis = properties.getCoalesceWindow().toMillis();
+        this.timeoutMillis = properties.getTimeout().toMillis();
+        this.retained = new PharmaChangeDTO[properties.getRetention()];
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatcher = Executors.newScheduledThreadPool(properties.getDispatcherThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "pharma-changes-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPharmaChanged(PharmaChangedEvent event) {
+        PharmaChangeDTO change = toChange(++sequence, event);
+        retained[slot(sequence)] = change;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(change);
+        }
+    }
+
+    public synchronized long currentSequence() {
+        return sequence;
+    }
+
+    /**
+     * @param lastSequence last sequence the subscriber applied, or null to receive only new changes
+     */
+    public SseEmitter subscribe(Long lastSequence) {
+        return subscribe(lastSequence, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(Long lastSequence, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        synchronized (this) {
+            if (lastSequence != null && lastSequence != sequence) {
+                long oldestRetained = Math.max(firstSequence + 1, sequence - retained.length + 1);
+                if (lastSequence + 1 < oldestRetained || lastSequence > sequence) {
+                    subscriber.reset(sequence);
+                } else {
+                    for (long replayed = lastSequence + 1; replayed <= sequence; replayed++) {
+                        subscriber.offer(retained[slot(replayed)]);
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % retained.length);
+    }
+
+    private static PharmaChangeDTO toChange(long sequence, PharmaChangedEvent event) {
+        PharmaDTO pharma = event.getPharma();
+        PharmaChangeDTO change = new PharmaChangeDTO();
+        change.setSequence(sequence);
+        change.setId(pharma.getId());
+        change.setChange(event.getType());
+        if (event.getType() != PharmaChangeType.DELETED) {
+            change.setQuantity(pharma.getQuantity());
+        }
+        if (event.getType() == PharmaChangeType.CREATED) {
+            change.setName(pharma.getName());
+            change.setBrand(pharma.getBrand());
+            change.setMax(pharma.getMax());
+            change.setType(pharma.getType());
+        }
+        return change;
+    }
+
+    /**
+     * A quantity change folded into a pending creation or quantity change of the same pharma. It takes
+     * the later sequence and quantity and keeps the kind and fields of the earlier one.
+     */
+    private static PharmaChangeDTO merge(PharmaChangeDTO previous, PharmaChangeDTO adjusted) {
+        if (previous.getChange() == PharmaChangeType.ADJUSTED) {
+            return adjusted;
+        }
+        return PharmaChangeDTO.builder()
+                .sequence(adjusted.getSequence())
+                .id(previous.getId())
+                .change(previous.getChange())
+                .quantity(adjusted.getQuantity())
+                .name(previous.getName())
+                .brand(previous.getBrand())
+                .max(previous.getMax())
+                .type(previous.getType())
+                .build();
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Map<Long, PharmaChangeDTO> pending = new LinkedHashMap<>();
+        private final Map<Long, PharmaChangeDTO> lastPendingById = new HashMap<>();
+        private Long resetSequence;
+        private boolean scheduled;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private synchronized void offer(PharmaChangeDTO change) {
+            PharmaChangeDTO previous = lastPendingById.get(change.getId());
+            if (change.getChange() == PharmaChangeType.ADJUSTED && previous != null && previous.getChange() != PharmaChangeType.DELETED) {
+                pending.remove(previous.getSequence());
+                change = merge(previous, change);
+            } else if (pending.size() == bufferSize) {
+                reset(change.getSequence());
+                return;
+            }
+            pending.put(change.getSequence(), change);
+            lastPendingById.put(change.getId(), change);
+            schedule();
+        }
+
+        private synchronized void reset(long sequence) {
+            pending.clear();
+            lastPendingById.clear();
+            resetSequence = sequence;
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled) {
+                scheduled = true;
+                dispatcher.schedule(this::drain, coalesceWindowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void drain() {
+            Long reset;
+            List<PharmaChangeDTO> changes;
+            synchronized (this) {
+                reset = resetSequence;
+                resetSequence = null;
+                changes = new ArrayList<>(pending.values());
+                pending.clear();
+                lastPendingById.clear();
+            }
+            try {
+                if (reset != null) {
+                    emitter.send(SseEmitter.event().id(String.valueOf(reset)).name(RESET_EVENT_NAME).data(reset));
+                }
+                for (PharmaChangeDTO change : changes) {
+                    emitter.send(SseEmitter.event().id(String.valueOf(change.getSequence())).name(CHANGE_EVENT_NAME).data(change));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping change stream subscriber: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return;
+            }
+            synchronized (this) {
+                scheduled = false;
+                if (resetSequence != null || !pending.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
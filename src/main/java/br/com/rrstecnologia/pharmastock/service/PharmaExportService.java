@@ -0,0 +1,65 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class PharmaExportService {
+
+    private static final int CLEAR_INTERVAL = 1000;
+
+    private final PharmaRepository pharmaRepository;
+    private final StockDeltaAggregator stockDeltaAggregator;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    public PharmaExportService(PharmaRepository pharmaRepository,
+                               StockDeltaAggregator stockDeltaAggregator,
+                               EntityManager entityManager,
+                               ObjectMapper objectMapper) {
+        this.pharmaRepository = pharmaRepository;
+        this.stockDeltaAggregator = stockDeltaAggregator;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(readOnly = true)
+    public long exportCatalog(OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(PharmaDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long exported = 0;
+        try (Stream<Pharma> pharmas = pharmaRepository.streamAll();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            Iterator<Pharma> iterator = pharmas.iterator();
+            while (iterator.hasNext()) {
+                PharmaDTO pharmaDTO = pharmaMapper.toDTO(iterator.next());
+                stockDeltaAggregator.applyPendingQuantity(pharmaDTO);
+                writer.writeValue(generator, pharmaDTO);
+                generator.writeRaw('\n');
+                exported++;
+                if (exported == 1 || exported % CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                    generator.flush();
+                }
+            }
+        }
+        return exported;
+    }
+}
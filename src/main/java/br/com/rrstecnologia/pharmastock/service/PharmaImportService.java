@@ -0,0 +1,256 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.ImportRejectionDTO;
+import br.com.rrstecnologia.pharmastock.dto.ImportReportDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.PharmaImportFormat;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.exception.InvalidImportFormatException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaAlreadyRegisteredException;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class PharmaImportService {
+
+    private static final List<String> CSV_COLUMNS = Arrays.asList("name", "brand", "max", "quantity", "type");
+    private static final String CSV_REORDER_POINT_COLUMN = "reorderpoint";
+
+    private final PharmaRepository pharmaRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final PharmastockProperties.CatalogImport properties;
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    public PharmaImportService(PharmaRepository pharmaRepository,
+                               EntityManager entityManager,
+                               ObjectMapper objectMapper,
+                               Validator validator,
+                               ApplicationEventPublisher eventPublisher,
+                               PlatformTransactionManager transactionManager,
+                               PharmastockProperties pharmastockProperties) {
+        this.pharmaRepository = pharmaRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = pharmastockProperties.getCatalogImport();
+    }
+
+    public ImportReportDTO importCatalog(InputStream body, PharmaImportFormat format) throws IOException, InvalidImportFormatException {
+        ImportReportDTO report = new ImportReportDTO();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        Map<String, Integer> csvHeader = format == PharmaImportFormat.CSV ? readCsvHeader(reader) : null;
+
+        List<ImportRow> chunk = new ArrayList<>(properties.getChunkSize());
+        long lineNumber = format == PharmaImportFormat.CSV ? 1 : 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            report.setProcessed(report.getProcessed() + 1);
+            try {
+                PharmaDTO pharmaDTO = format == PharmaImportFormat.CSV ? parseCsv(line, csvHeader) : parseJson(line);
+                String violations = validate(pharmaDTO);
+                if (violations != null) {
+                    reject(report, lineNumber, pharmaDTO.getName(), violations);
+                    continue;
+                }
+                chunk.add(new ImportRow(lineNumber, pharmaDTO));
+            } catch (IllegalArgumentException e) {
+                reject(report, lineNumber, null, e.getMessage());
+            }
+            if (chunk.size() == properties.getChunkSize()) {
+                importChunk(chunk, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, report);
+        }
+        log.info("Catalog import finished: {} processed, {} imported, {} rejected",
+                report.getProcessed(), report.getImported(), report.getRejected());
+        return report;
+    }
+
+    private void importChunk(List<ImportRow> chunk, ImportReportDTO report) {
+        List<ImportRejectionDTO> duplicates = new ArrayList<>();
+        try {
+            int imported = transactionTemplate.execute(status -> insertChunk(chunk, duplicates));
+            report.setImported(report.getImported() + imported);
+            duplicates.forEach(duplicate -> reject(report, duplicate.getLine(), duplicate.getName(), duplicate.getReason()));
+        } catch (DataIntegrityViolationException e) {
+            chunk.forEach(row -> reject(report, row.line, row.pharma.getName(), "Chunk rolled back: " + e.getMostSpecificCause().getMessage()));
+        }
+        log.info("Catalog import progress: {} processed, {} imported, {} rejected",
+                report.getProcessed(), report.getImported(), report.getRejected());
+    }
+
+    private int insertChunk(List<ImportRow> chunk, List<ImportRejectionDTO> duplicates) {
+        Set<String> names = chunk.stream()
+                .map(row -> row.pharma.getName())
+                .collect(Collectors.toSet());
+        Set<String> registeredNames = new HashSet<>(pharmaRepository.findExistingNames(names));
+
+        List<Pharma> pharmasToInsert = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            String name = row.pharma.getName();
+            if (!registeredNames.add(name)) {
+                duplicates.add(new ImportRejectionDTO(row.line, name, new PharmaAlreadyRegisteredException(name).getMessage()));
+                continue;
+            }
+            Pharma pharma = pharmaMapper.toModel(row.pharma);
+            pharma.setId(null);
+            pharmasToInsert.add(pharma);
+        }
+        pharmaRepository.saveAll(pharmasToInsert);
+        pharmaRepository.flush();
+        entityManager.clear();
+        pharmasToInsert.forEach(pharma -> eventPublisher.publishEvent(PharmaChangedEvent.created(pharmaMapper.toDTO(pharma), StockMovementSource.IMPORT)));
+        return pharmasToInsert.size();
+    }
+
+    private String validate(PharmaDTO pharmaDTO) {
+        Set<ConstraintViolation<PharmaDTO>> violations = validator.validate(pharmaDTO);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (pharmaDTO.getQuantity() > pharmaDTO.getMax()) {
+            return "quantity must be less than or equal to max";
+        }
+        if (pharmaDTO.getReorderPoint() != null && pharmaDTO.getReorderPoint() > pharmaDTO.getMax()) {
+            return "reorderPoint must be less than or equal to max";
+        }
+        return null;
+    }
+
+    private void reject(ImportReportDTO report, long line, String name, String reason) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getRejections().size() < properties.getMaxReportedRejections()) {
+            report.getRejections().add(new ImportRejectionDTO(line, name, reason));
+        }
+    }
+
+    private PharmaDTO parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, PharmaDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private Map<String, Integer> readCsvHeader(BufferedReader reader) throws IOException, InvalidImportFormatException {
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new InvalidImportFormatException("CSV body is empty");
+        }
+        List<String> columns = splitCsv(headerLine);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!header.keySet().containsAll(CSV_COLUMNS)) {
+            throw new InvalidImportFormatException("CSV header must contain the columns " + CSV_COLUMNS);
+        }
+        return header;
+    }
+
+    private PharmaDTO parseCsv(String line, Map<String, Integer> header) {
+        List<String> values = splitCsv(line);
+        if (values.size() < header.size()) {
+            throw new IllegalArgumentException(String.format("Expected %d columns but found %d", header.size(), values.size()));
+        }
+        try {
+            Integer reorderPointColumn = header.get(CSV_REORDER_POINT_COLUMN);
+            return PharmaDTO.builder()
+                    .name(values.get(header.get("name")))
+                    .brand(values.get(header.get("brand")))
+                    .max(Integer.valueOf(values.get(header.get("max")).trim()))
+                    .quantity(Integer.valueOf(values.get(header.get("quantity")).trim()))
+                    .type(PharmaType.valueOf(values.get(header.get("type")).trim().toUpperCase(Locale.ROOT)))
+                    .reorderPoint(reorderPointColumn == null ? null : Integer.valueOf(values.get(reorderPointColumn).trim()))
+                    .build();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+        }
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static final class ImportRow {
+
+        private final long line;
+        private final PharmaDTO pharma;
+
+        private ImportRow(long line, PharmaDTO pharma) {
+            this.line = line;
+            this.pharma = pharma;
+        }
+    }
+}
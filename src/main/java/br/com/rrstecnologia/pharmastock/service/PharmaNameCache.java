@@ -0,0 +1,47 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache for lookups by name. Misses are cached as well, and entries are
+ * invalidated by PharmaService once the transaction that changed the pharma commits, right after it
+ * bumps the pharma's version, so a load running concurrently with the change can never leave the old
+ * stock behind.
+ */
+@Component
+public class PharmaNameCache {
+
+    private final Cache<String, Optional<PharmaDTO>> cache;
+
+    public PharmaNameCache(PharmastockProperties pharmastockProperties, MeterRegistry meterRegistry) {
+        PharmastockProperties.NameCache properties = pharmastockProperties.getNameCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "pharma.name");
+    }
+
+    public Optional<PharmaDTO> get(String name, Function<String, Optional<PharmaDTO>> loader) {
+        return cache.get(name, loader);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void invalidate(String name) {
+        cache.invalidate(name);
+    }
+}
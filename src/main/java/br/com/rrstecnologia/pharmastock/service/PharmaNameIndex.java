@@ -0,0 +1,132 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaSummaryDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory sorted index over pharma names and brands for typeahead. Keys are normalized (lower case,
+ * accents stripped) so "acido" matches "Ácido", and prefix queries are a range scan over the skip list.
+ * It is built from the startup catalog rather than its own scan. Changes are recorded from before the
+ * rows are read until the rebuilt index is swapped in, and then replayed on it; the index records from
+ * construction, so changes made while the startup catalog loads are kept.
+ */
+@Slf4j
+@Service
+public class PharmaNameIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final char KEY_UPPER_BOUND = '\uffff';
+    private static final int MAX_SEARCH_LIMIT = 100;
+
+    private volatile ConcurrentSkipListMap<String, PharmaSummaryDTO> index = new ConcurrentSkipListMap<>();
+    private List<PharmaChangedEvent> changesDuringRebuild = new ArrayList<>();
+
+    @EventListener
+    public void onCatalogLoaded(CatalogLoadedEvent event) {
+        long start = System.nanoTime();
+        swap(event.getPharmas().stream()
+                .map(pharma -> new PharmaSummaryDTO(pharma.getId(), pharma.getName(), pharma.getBrand(), pharma.getType())));
+        log.info("Pharma name index built with {} keys in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void rebuild(Stream<PharmaSummaryDTO> pharmas) {
+        beginRecording();
+        swap(pharmas);
+    }
+
+    /**
+     * Starts recording changes; call it before reading the rows handed to {@link #swap(Stream)}.
+     */
+    public synchronized void beginRecording() {
+        if (changesDuringRebuild == null) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Builds a new index from {@code pharmas}, replays the changes recorded since
+     * {@link #beginRecording()} on it and swaps it in.
+     */
+    public void swap(Stream<PharmaSummaryDTO> pharmas) {
+        ConcurrentSkipListMap<String, PharmaSummaryDTO> rebuiltIndex = new ConcurrentSkipListMap<>();
+        pharmas.forEach(pharma -> add(rebuiltIndex, pharma));
+        synchronized (this) {
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.forEach(event -> apply(rebuiltIndex, event));
+            }
+            changesDuringRebuild = null;
+            index = rebuiltIndex;
+        }
+    }
+
+    public List<PharmaSummaryDTO> search(String prefix, int limit) {
+        int maxResults = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        String normalizedPrefix = normalize(prefix);
+        NavigableMap<String, PharmaSummaryDTO> matches = index.subMap(normalizedPrefix, true, normalizedPrefix + KEY_UPPER_BOUND, true);
+        Map<Long, PharmaSummaryDTO> results = new LinkedHashMap<>();
+        for (PharmaSummaryDTO pharma : matches.values()) {
+            results.putIfAbsent(pharma.getId(), pharma);
+            if (results.size() == maxResults) {
+                break;
+            }
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPharmaChanged(PharmaChangedEvent event) {
+        if (event.getType() == PharmaChangeType.ADJUSTED) {
+            return;
+        }
+        synchronized (this) {
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(event);
+            }
+            apply(index, event);
+        }
+    }
+
+    private void apply(ConcurrentSkipListMap<String, PharmaSummaryDTO> target, PharmaChangedEvent event) {
+        PharmaDTO pharma = event.getPharma();
+        PharmaSummaryDTO summary = new PharmaSummaryDTO(pharma.getId(), pharma.getName(), pharma.getBrand(), pharma.getType());
+        if (event.getType() == PharmaChangeType.DELETED) {
+            target.remove(key(summary.getName(), summary.getId()));
+            target.remove(key(summary.getBrand(), summary.getId()));
+        } else {
+            add(target, summary);
+        }
+    }
+
+    private static void add(ConcurrentSkipListMap<String, PharmaSummaryDTO> target, PharmaSummaryDTO pharma) {
+        target.put(key(pharma.getName(), pharma.getId()), pharma);
+        target.put(key(pharma.getBrand(), pharma.getId()), pharma);
+    }
+
+    private static String key(String value, Long id) {
+        return normalize(value) + KEY_SEPARATOR + id;
+    }
+
+    static String normalize(String value) {
+        String decomposed = Normalizer.normalize(value.trim(), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
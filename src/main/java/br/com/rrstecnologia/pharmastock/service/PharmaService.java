@@ -1,50 +1,145 @@
 package br.com.rrstecnologia.pharmastock.service;
 
+import br.com.rrstecnologia.pharmastock.config.ReplicaReads;
 import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaFilterDTO;
 import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.exception.InvalidReorderPointException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaAlreadyRegisteredException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
 import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
 import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.PharmaStockBatchRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class PharmaService {
 
     private final PharmaRepository pharmaRepository;
+    private final PharmaStockBatchRepository pharmaStockBatchRepository;
+    private final StockDeltaAggregator stockDeltaAggregator;
+    private final PharmaNameCache pharmaNameCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReplicaReads replicaReads;
+    private final StockHolds stockHolds;
+    private final TransactionTemplate transactionTemplate;
     private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+    private final long catalogBaseVersion = nowMicros();
+    private final AtomicLong catalogVersion = new AtomicLong(catalogBaseVersion);
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
 
-    public PharmaDTO createPharma(PharmaDTO pharmaDTO) throws PharmaAlreadyRegisteredException {
+    @Transactional
+    public PharmaDTO createPharma(PharmaDTO pharmaDTO) throws PharmaAlreadyRegisteredException, InvalidReorderPointException {
+        verifyReorderPoint(pharmaDTO);
         verifyIfIsAlreadyResgistered(pharmaDTO.getName());
         Pharma pharma = pharmaMapper.toModel(pharmaDTO);
         Pharma savedPharma = pharmaRepository.save(pharma);
-        return pharmaMapper.toDTO(savedPharma);
+        PharmaDTO savedPharmaDTO = pharmaMapper.toDTO(savedPharma);
+        eventPublisher.publishEvent(PharmaChangedEvent.created(savedPharmaDTO, StockMovementSource.API));
+        return savedPharmaDTO;
     }
 
+    @Transactional(readOnly = true)
     public PharmaDTO findByName(String name) throws PharmaNotFoundException{
-        Pharma foundPharma = pharmaRepository.findByName(name)
+        PharmaDTO foundPharma = pharmaNameCache.get(name, this::loadByName)
                 .orElseThrow(() -> new PharmaNotFoundException(name));
-        return pharmaMapper.toDTO(foundPharma);
+        PharmaDTO pharmaDTO = foundPharma.toBuilder().build();
+        stockDeltaAggregator.applyPendingQuantity(pharmaDTO);
+        return pharmaDTO;
     }
 
-    public List<PharmaDTO> listAll(){
-        return pharmaRepository.findAll()
-                .stream()
-                .map(pharmaMapper::toDTO)
-                .collect(Collectors.toList());
+    public PharmaDTO findById(Long id) throws PharmaNotFoundException{
+        return toDTO(verifyIfExists(id));
     }
 
+    @Transactional(readOnly = true)
+    public Slice<PharmaDTO> listAll(PharmaFilterDTO filter, Pageable pageable){
+        replicaReads.allow(catalogVersion());
+        if(filter.getAfterId() != null){
+            return listAfter(filter, pageable.getPageSize());
+        }
+        Page<PharmaDTO> pharmas = pharmaRepository.findFiltered(filter.getType(), filter.getBrand(), filter.getLowStock(), pageable);
+        pharmas.forEach(stockDeltaAggregator::applyPendingQuantity);
+        return pharmas;
+    }
+
+    /**
+     * Version of the whole catalog, bumped by every committed change. Versions are the commit time in
+     * microseconds, kept strictly increasing, so they never repeat across restarts and also tell how far a
+     * read replica must have replayed to serve the data they tag. They are kept per JVM and only see the
+     * changes committed through this instance, like the name cache they guard.
+     */
+    public long catalogVersion(){
+        return catalogVersion.get();
+    }
+
+    /**
+     * Version of the pharma with the given name: the catalog version of its last committed change, or
+     * the boot version when it has not changed since startup.
+     */
+    public long version(String name){
+        Long version = versions.get(name);
+        return version != null ? version : catalogBaseVersion;
+    }
+
+    /**
+     * Bumps the version before invalidating the cached lookup. A load that starts after the
+     * invalidation therefore asks the replica for the new version; one already running is waited for
+     * and then discarded by the invalidation.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPharmaChanged(PharmaChangedEvent event){
+        long version = catalogVersion.updateAndGet(current -> Math.max(current + 1, nowMicros()));
+        versions.put(event.getPharma().getName(), version);
+        pharmaNameCache.invalidate(event.getPharma().getName());
+    }
+
+    /**
+     * The replica freshness is read inside the cache load rather than before it, so it can never be
+     * older than the last invalidation of the name.
+     */
+    private Optional<PharmaDTO> loadByName(String name){
+        replicaReads.allow(version(name));
+        return pharmaRepository.findByName(name).map(pharmaMapper::toDTO);
+    }
+
+    @Transactional
     public void deleteById(Long id) throws PharmaNotFoundException{
-        verifyIfExists(id);
+        PharmaDTO pharmaToDelete = toDTO(verifyIfExists(id));
         pharmaRepository.deleteById(id);
+        stockDeltaAggregator.evict(id);
+        eventPublisher.publishEvent(PharmaChangedEvent.deleted(pharmaToDelete, StockMovementSource.API));
+    }
+
+    private Slice<PharmaDTO> listAfter(PharmaFilterDTO filter, int pageSize){
+        List<PharmaDTO> pharmas = pharmaRepository.findFilteredAfter(filter.getType(), filter.getBrand(), filter.getLowStock(),
+                filter.getAfterId(), PageRequest.of(0, pageSize + 1));
+        List<PharmaDTO> content = pharmas.size() > pageSize ? pharmas.subList(0, pageSize) : pharmas;
+        content.forEach(stockDeltaAggregator::applyPendingQuantity);
+        return new SliceImpl<>(content, PageRequest.of(0, pageSize, Sort.by("id")), pharmas.size() > pageSize);
     }
 
     private void verifyIfIsAlreadyResgistered(String name) throws PharmaAlreadyRegisteredException{
@@ -54,30 +149,94 @@ public class PharmaService {
         }
     }
 
+    private void verifyReorderPoint(PharmaDTO pharmaDTO) throws InvalidReorderPointException{
+        if(pharmaDTO.getReorderPoint() != null && pharmaDTO.getReorderPoint() > pharmaDTO.getMax()){
+            throw new InvalidReorderPointException(pharmaDTO.getReorderPoint(), pharmaDTO.getMax());
+        }
+    }
+
     private Pharma verifyIfExists(Long id) throws PharmaNotFoundException{
         return pharmaRepository.findById(id)
                 .orElseThrow(() -> new PharmaNotFoundException(id));
     }
 
     public PharmaDTO increment(Long id, int quantityToIncrement) throws PharmaNotFoundException, PharmaStockExceededException{
-        Pharma pharmaToIncrementStock = verifyIfExists(id);
-        int pharmaStockAfterIncrement = quantityToIncrement + pharmaToIncrementStock.getQuantity();
-        if(pharmaStockAfterIncrement <= pharmaToIncrementStock.getMax()){
-            pharmaToIncrementStock.setQuantity(pharmaStockAfterIncrement);
-            Pharma incrementPharmaStock = pharmaRepository.save(pharmaToIncrementStock);
-            return pharmaMapper.toDTO(incrementPharmaStock);
+        return adjustStock(id, quantityToIncrement, 0);
+    }
+
+    public PharmaDTO decrement(Long id, int quantityToDecrement) throws PharmaNotFoundException, PharmaStockExceededException{
+        return adjustStock(id, -quantityToDecrement, 0);
+    }
+
+    /**
+     * Takes out of stock units the caller holds in StockHolds: only the units held by others are kept
+     * as the floor. The caller drops its hold once this returns.
+     */
+    public PharmaDTO decrementHeld(Long id, int quantityToDecrement) throws PharmaNotFoundException, PharmaStockExceededException{
+        return adjustStock(id, -quantityToDecrement, quantityToDecrement);
+    }
+
+    /**
+     * Quantity of the pharma read under its row lock, or the live write-behind counter. A hold is
+     * registered before this is read, and a decrement checks the holds again after it is applied, so of
+     * a racing hold and decrement at least one sees the other.
+     */
+    public int lockQuantity(Long id) throws PharmaNotFoundException{
+        if(stockDeltaAggregator.isEnabled()){
+            return stockDeltaAggregator.quantity(id);
+        }
+        Integer quantity = transactionTemplate.execute(status -> pharmaRepository.findByIdForUpdate(id)
+                .map(Pharma::getQuantity)
+                .orElse(null));
+        if(quantity == null){
+            throw new PharmaNotFoundException(id);
         }
-        throw new PharmaStockExceededException(id, quantityToIncrement);
+        return quantity;
     }
 
-    public  PharmaDTO decrement(Long id, int quantityToDecrement) throws PharmaNotFoundException, PharmaStockExceededException{
-        Pharma pharmaToDecrementStock = verifyIfExists(id);
-        int pharmaStockAfterDecrement = quantityToDecrement + pharmaToDecrementStock.getQuantity();
-        if(pharmaStockAfterDecrement <= pharmaToDecrementStock.getMax()){
-            pharmaToDecrementStock.setQuantity(pharmaStockAfterDecrement);
-            Pharma decrementPharmaStock = pharmaRepository.save(pharmaToDecrementStock);
-            return pharmaMapper.toDTO(decrementPharmaStock);
+    /**
+     * A decrement may not take units held by reservations, so their total is the floor of the
+     * conditional update, and it is checked again once the row is updated and locked in case a hold
+     * was registered meanwhile. A rejected update falls back to an existence check to tell a missing
+     * pharma apart from an exceeded stock. In write-behind mode no transaction is opened: the
+     * aggregator records the movement when it flushes.
+     */
+    private PharmaDTO adjustStock(Long id, int delta, int ownHeld) throws PharmaNotFoundException, PharmaStockExceededException{
+        if(stockDeltaAggregator.isEnabled()){
+            PharmaDTO adjustedPharma = stockDeltaAggregator.adjust(id, delta, () -> floorFor(id, delta, ownHeld), StockMovementSource.API);
+            eventPublisher.publishEvent(PharmaChangedEvent.adjustedWriteBehind(adjustedPharma, delta, StockMovementSource.API));
+            return adjustedPharma;
         }
-        throw new PharmaStockExceededException(id, quantityToDecrement);
+        PharmaDTO adjustedPharma = transactionTemplate.execute(status -> {
+            if(pharmaStockBatchRepository.adjustQuantity(id, delta, floorFor(id, delta, ownHeld)) == 0){
+                return null;
+            }
+            PharmaDTO pharmaDTO = pharmaRepository.findById(id).map(pharmaMapper::toDTO).orElseThrow(IllegalStateException::new);
+            if(pharmaDTO.getQuantity() < floorFor(id, delta, ownHeld)){
+                status.setRollbackOnly();
+                return null;
+            }
+            eventPublisher.publishEvent(PharmaChangedEvent.adjusted(pharmaDTO, delta, StockMovementSource.API));
+            return pharmaDTO;
+        });
+        if(adjustedPharma == null){
+            verifyIfExists(id);
+            throw new PharmaStockExceededException(id, Math.abs(delta));
+        }
+        return adjustedPharma;
+    }
+
+    private int floorFor(Long id, int delta, int ownHeld){
+        return delta < 0 ? stockHolds.held(id) - ownHeld : 0;
+    }
+
+    private static long nowMicros(){
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    private PharmaDTO toDTO(Pharma pharma){
+        PharmaDTO pharmaDTO = pharmaMapper.toDTO(pharma);
+        stockDeltaAggregator.applyPendingQuantity(pharmaDTO);
+        return pharmaDTO;
     }
 }
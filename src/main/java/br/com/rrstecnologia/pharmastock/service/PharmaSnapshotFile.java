@@ -0,0 +1,239 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Columnar binary snapshot of the catalog. After a fixed header every column is stored contiguously:
+ * ids, max, quantity and reorder point as primitives, names as length-prefixed UTF-8, and brand and type as a
+ * dictionary plus one index per row. A CRC32 trailer guards against torn or truncated files, and
+ * files are written next to the target and atomically moved into place.
+ */
+public final class PharmaSnapshotFile {
+
+    private static final int MAGIC = 0x50534e50;
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = Integer.BYTES * 3 + Long.BYTES * 2;
+    private static final int TRAILER_SIZE = Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private PharmaSnapshotFile() {
+    }
+
+    public static void write(Path file, Snapshot snapshot) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        List<PharmaDTO> pharmas = snapshot.getPharmas();
+        try (ChannelWriter writer = new ChannelWriter(FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            writer.reserve(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(snapshot.getTakenAt().toEpochMilli())
+                    .putLong(snapshot.getLastMovementId())
+                    .putInt(pharmas.size());
+            for (PharmaDTO pharma : pharmas) {
+                writer.reserve(Long.BYTES).putLong(pharma.getId());
+            }
+            for (PharmaDTO pharma : pharmas) {
+                writer.reserve(Integer.BYTES).putInt(pharma.getMax());
+            }
+            for (PharmaDTO pharma : pharmas) {
+                writer.reserve(Integer.BYTES).putInt(pharma.getQuantity());
+            }
+            for (PharmaDTO pharma : pharmas) {
+                writer.reserve(Integer.BYTES).putInt(pharma.getReorderPoint());
+            }
+            for (PharmaDTO pharma : pharmas) {
+                writer.putString(pharma.getName());
+            }
+            writer.putDictionaryColumn(pharmas, PharmaDTO::getBrand);
+            writer.putDictionaryColumn(pharmas, pharma -> pharma.getType().name());
+            writer.finish();
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the snapshot, or empty when the file is missing or fails validation
+     */
+    public static Optional<Snapshot> read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                return Optional.empty();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer content = buffer.duplicate();
+            content.limit((int) size - TRAILER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if (crc.getValue() != buffer.getLong((int) size - TRAILER_SIZE)
+                    || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return Optional.empty();
+            }
+            Instant takenAt = Instant.ofEpochMilli(buffer.getLong());
+            long lastMovementId = buffer.getLong();
+            int count = buffer.getInt();
+            List<PharmaDTO> pharmas = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                PharmaDTO pharma = new PharmaDTO();
+                pharma.setId(buffer.getLong());
+                pharmas.add(pharma);
+            }
+            for (PharmaDTO pharma : pharmas) {
+                pharma.setMax(buffer.getInt());
+            }
+            for (PharmaDTO pharma : pharmas) {
+                pharma.setQuantity(buffer.getInt());
+            }
+            for (PharmaDTO pharma : pharmas) {
+                pharma.setReorderPoint(buffer.getInt());
+            }
+            for (PharmaDTO pharma : pharmas) {
+                pharma.setName(getString(buffer));
+            }
+            List<String> brands = getDictionaryColumn(buffer, count);
+            List<String> types = getDictionaryColumn(buffer, count);
+            for (int i = 0; i < count; i++) {
+                pharmas.get(i).setBrand(brands.get(i));
+                pharmas.get(i).setType(PharmaType.valueOf(types.get(i)));
+            }
+            return Optional.of(new Snapshot(takenAt, lastMovementId, pharmas));
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> getDictionaryColumn(ByteBuffer buffer, int count) {
+        int dictionarySize = buffer.getInt();
+        List<String> dictionary = new ArrayList<>(dictionarySize);
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary.add(getString(buffer));
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(dictionary.get(buffer.getInt()));
+        }
+        return values;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+
+        private final Instant takenAt;
+
+        /**
+         * Highest ledger movement id committed before the rows were read; later movements are caught up.
+         */
+        private final long lastMovementId;
+
+        private final List<PharmaDTO> pharmas;
+    }
+
+    private static final class ChannelWriter implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        private ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+            return buffer;
+        }
+
+        private void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            reserve(Integer.BYTES).putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(bytes.length - offset, reserve(1).remaining());
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void putDictionaryColumn(List<PharmaDTO> pharmas, Function<PharmaDTO, String> column) throws IOException {
+            Map<String, Integer> dictionary = new HashMap<>();
+            List<String> entries = new ArrayList<>();
+            int[] indexes = new int[pharmas.size()];
+            for (int i = 0; i < pharmas.size(); i++) {
+                String value = column.apply(pharmas.get(i));
+                Integer index = dictionary.get(value);
+                if (index == null) {
+                    index = entries.size();
+                    dictionary.put(value, index);
+                    entries.add(value);
+                }
+                indexes[i] = index;
+            }
+            reserve(Integer.BYTES).putInt(entries.size());
+            for (String entry : entries) {
+                putString(entry);
+            }
+            for (int index : indexes) {
+                reserve(Integer.BYTES).putInt(index);
+            }
+        }
+
+        private void finish() throws IOException {
+            drain();
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).putLong(crc.getValue());
+            trailer.flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
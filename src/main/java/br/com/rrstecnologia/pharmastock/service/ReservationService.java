@@ -0,0 +1,188 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.ReservationDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.exception.ReservationNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds units for checkout without taking them out of stock. Held totals are kept per pharma in
+ * StockHolds, so the available quantity is the stock minus one map lookup, and reserving, committing and
+ * releasing a pharma are serialized on a striped lock. A hold is registered before the stock is read under
+ * the pharma row lock, so it cannot race a direct decrement into overselling. Holds live in memory only,
+ * so each node checks the committed stock but not the holds of other nodes; they expire through a timer
+ * wheel advanced once per tick and are dropped with their pharma when it is deleted.
+ */
+@Slf4j
+@Service
+public class ReservationService {
+
+    private final PharmaService pharmaService;
+    private final StockHolds stockHolds;
+    private final PharmastockProperties.Reservation properties;
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private final Object[] locks;
+    private final TimerWheel<String> timerWheel;
+    private ScheduledExecutorService expirer;
+
+    public ReservationService(PharmaService pharmaService, StockHolds stockHolds, PharmastockProperties pharmastockProperties) {
+        this.pharmaService = pharmaService;
+        this.stockHolds = stockHolds;
+        this.properties = pharmastockProperties.getReservation();
+        this.locks = new Object[properties.getLockStripes()];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        this.timerWheel = new TimerWheel<>(properties.getTick().toMillis(), properties.getWheelSize(), System.currentTimeMillis());
+    }
+
+    @PostConstruct
+    public void start() {
+        long tickMillis = properties.getTick().toMillis();
+        expirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-expirer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expirer.scheduleAtFixedRate(() -> expire(System.currentTimeMillis()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        expirer.shutdown();
+    }
+
+    public ReservationDTO reserve(Long pharmaId, int quantity, Integer ttlSeconds) throws PharmaNotFoundException, PharmaStockExceededException {
+        Duration ttl = ttlSeconds == null ? properties.getDefaultTtl() : Duration.ofSeconds(ttlSeconds);
+        if (ttl.compareTo(properties.getMaxTtl()) > 0) {
+            ttl = properties.getMaxTtl();
+        }
+        synchronized (lockFor(pharmaId)) {
+            stockHolds.add(pharmaId, quantity);
+            int available;
+            try {
+                available = pharmaService.lockQuantity(pharmaId) - held(pharmaId);
+            } catch (PharmaNotFoundException | RuntimeException e) {
+                stockHolds.remove(pharmaId, quantity);
+                throw e;
+            }
+            if (available < 0) {
+                stockHolds.remove(pharmaId, quantity);
+                throw new PharmaStockExceededException(pharmaId, quantity);
+            }
+            Hold hold = new Hold(UUID.randomUUID().toString(), pharmaId, quantity, System.currentTimeMillis() + ttl.toMillis());
+            holds.put(hold.id, hold);
+            timerWheel.schedule(hold.id, hold.expiresAtMillis);
+            return toDTO(hold, available);
+        }
+    }
+
+    public PharmaDTO commit(String reservationId) throws ReservationNotFoundException, PharmaNotFoundException, PharmaStockExceededException {
+        Hold hold = verifyIfExists(reservationId);
+        synchronized (lockFor(hold.pharmaId)) {
+            if (holds.get(hold.id) != hold) {
+                throw new ReservationNotFoundException(reservationId);
+            }
+            PharmaDTO pharma = pharmaService.decrementHeld(hold.pharmaId, hold.quantity);
+            remove(hold);
+            return pharma;
+        }
+    }
+
+    public void release(String reservationId) throws ReservationNotFoundException {
+        Hold hold = verifyIfExists(reservationId);
+        synchronized (lockFor(hold.pharmaId)) {
+            if (!remove(hold)) {
+                throw new ReservationNotFoundException(reservationId);
+            }
+        }
+    }
+
+    public int held(Long pharmaId) {
+        return stockHolds.held(pharmaId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPharmaChanged(PharmaChangedEvent event) {
+        if (event.getType() != PharmaChangeType.DELETED) {
+            return;
+        }
+        Long pharmaId = event.getPharma().getId();
+        synchronized (lockFor(pharmaId)) {
+            holds.values().stream()
+                    .filter(hold -> hold.pharmaId.equals(pharmaId))
+                    .forEach(this::remove);
+        }
+    }
+
+    void expire(long nowMillis) {
+        for (String reservationId : timerWheel.advance(nowMillis)) {
+            Hold hold = holds.get(reservationId);
+            if (hold != null) {
+                synchronized (lockFor(hold.pharmaId)) {
+                    if (remove(hold)) {
+                        log.debug("Reservation {} of {} units of pharma {} expired", hold.id, hold.quantity, hold.pharmaId);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean remove(Hold hold) {
+        if (!holds.remove(hold.id, hold)) {
+            return false;
+        }
+        stockHolds.remove(hold.pharmaId, hold.quantity);
+        timerWheel.cancel(hold.id);
+        return true;
+    }
+
+    private Hold verifyIfExists(String reservationId) throws ReservationNotFoundException {
+        Hold hold = holds.get(reservationId);
+        if (hold == null) {
+            throw new ReservationNotFoundException(reservationId);
+        }
+        return hold;
+    }
+
+    private Object lockFor(Long pharmaId) {
+        return locks[(Long.hashCode(pharmaId) & Integer.MAX_VALUE) % locks.length];
+    }
+
+    private static ReservationDTO toDTO(Hold hold, int available) {
+        return new ReservationDTO(hold.id, hold.pharmaId, hold.quantity, Instant.ofEpochMilli(hold.expiresAtMillis), available);
+    }
+
+    private static final class Hold {
+
+        private final String id;
+        private final Long pharmaId;
+        private final int quantity;
+        private final long expiresAtMillis;
+
+        private Hold(String id, Long pharmaId, int quantity, long expiresAtMillis) {
+            this.id = id;
+            this.pharmaId = pharmaId;
+            this.quantity = quantity;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAggregateDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.enums.StockAggregateGrouping;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Item count, units and capacity per pharma type and brand, kept as counters that every committed
+ * change adds its delta to, so reading them costs one pass over the groups. Once the application is
+ * ready, a GROUP BY over the catalog periodically replaces the counters to correct any drift. Changes
+ * that land while it runs are recorded and applied on top of its result, so it succeeds under steady
+ * writes; only a change committed in the instant between recording starting and the query reading can
+ * be counted twice, and the next reconciliation replaces that too.
+ */
+@Slf4j
+@Service
+public class StockAggregateService {
+
+    private static final Comparator<StockAggregateDTO> GROUP_ORDER = Comparator
+            .comparing(StockAggregateDTO::getType, Comparator.nullsFirst(Comparator.<PharmaType>naturalOrder()))
+            .thenComparing(StockAggregateDTO::getBrand, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    private final PharmaRepository pharmaRepository;
+    private final StockDeltaAggregator stockDeltaAggregator;
+    private final PharmastockProperties.Aggregates properties;
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Map<PharmaType, ConcurrentMap<String, Counters>> groups = newGroups();
+    private volatile Queue<PharmaChangedEvent> changesDuringReconcile;
+    private ScheduledExecutorService reconciler;
+
+    public StockAggregateService(PharmaRepository pharmaRepository,
+                                 StockDeltaAggregator stockDeltaAggregator,
+                                 PharmastockProperties pharmastockProperties) {
+        this.pharmaRepository = pharmaRepository;
+        this.stockDeltaAggregator = stockDeltaAggregator;
+        this.properties = pharmastockProperties.getAggregates();
+    }
+
+    /**
+     * The first reconciliation runs with the catalog load; the periodic ones start an interval later.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long intervalMillis = properties.getReconcileInterval().toMillis();
+        reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-aggregate-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcileQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reconciler != null) {
+            reconciler.shutdown();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPharmaChanged(PharmaChangedEvent event) {
+        swapLock.readLock().lock();
+        try {
+            apply(groups, event);
+            Queue<PharmaChangedEvent> recorded = changesDuringReconcile;
+            if (recorded != null) {
+                recorded.add(event);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onCatalogLoaded(CatalogLoadedEvent event) {
+        reconcileQuietly();
+    }
+
+    public List<StockAggregateDTO> aggregates(StockAggregateGrouping grouping) {
+        Map<List<Object>, StockAggregateDTO> totals = new HashMap<>();
+        groups.forEach((type, brands) -> brands.forEach((brand, counters) -> {
+            long items = counters.items.sum();
+            if (items == 0) {
+                return;
+            }
+            PharmaType groupType = grouping == StockAggregateGrouping.BRAND ? null : type;
+            String groupBrand = grouping == StockAggregateGrouping.TYPE ? null : brand;
+            StockAggregateDTO total = totals.computeIfAbsent(Arrays.asList(groupType, groupBrand),
+                    key -> new StockAggregateDTO(groupType, groupBrand, 0L, 0L, 0L));
+            total.setItems(total.getItems() + items);
+            total.setQuantity(total.getQuantity() + counters.quantity.sum());
+            total.setCapacity(total.getCapacity() + counters.capacity.sum());
+        }));
+        List<StockAggregateDTO> aggregates = new ArrayList<>(totals.values());
+        aggregates.sort(GROUP_ORDER);
+        return aggregates;
+    }
+
+    /**
+     * Replaces the counters with a GROUP BY over the catalog plus the changes recorded while it ran.
+     *
+     * @return false when the counters were kept because write-behind deltas could not be flushed first
+     */
+    public synchronized boolean reconcile() {
+        if (stockDeltaAggregator.isEnabled()) {
+            stockDeltaAggregator.flush();
+            if (stockDeltaAggregator.hasUnflushedDeltas()) {
+                return false;
+            }
+        }
+        Queue<PharmaChangedEvent> recorded = new ConcurrentLinkedQueue<>();
+        changesDuringReconcile = recorded;
+        Map<PharmaType, ConcurrentMap<String, Counters>> reconciled = newGroups();
+        try {
+            for (StockAggregateDTO group : pharmaRepository.sumByTypeAndBrand()) {
+                reconciled.get(group.getType())
+                        .computeIfAbsent(group.getBrand(), brand -> new Counters())
+                        .add(group.getItems(), group.getQuantity(), group.getCapacity());
+            }
+        } catch (RuntimeException e) {
+            changesDuringReconcile = null;
+            throw e;
+        }
+        swapLock.writeLock().lock();
+        try {
+            changesDuringReconcile = null;
+            recorded.forEach(event -> apply(reconciled, event));
+            groups = reconciled;
+            return true;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            if (!reconcile()) {
+                log.debug("Write-behind deltas are still unflushed, keeping the incremental counters");
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not reconcile stock aggregates", e);
+        }
+    }
+
+    private static void apply(Map<PharmaType, ConcurrentMap<String, Counters>> groups, PharmaChangedEvent event) {
+        PharmaDTO pharma = event.getPharma();
+        int items = event.getType() == PharmaChangeType.CREATED ? 1 : event.getType() == PharmaChangeType.DELETED ? -1 : 0;
+        groups.get(pharma.getType())
+                .computeIfAbsent(pharma.getBrand(), brand -> new Counters())
+                .add(items, event.getDelta(), items * pharma.getMax());
+    }
+
+    private static Map<PharmaType, ConcurrentMap<String, Counters>> newGroups() {
+        Map<PharmaType, ConcurrentMap<String, Counters>> groups = new EnumMap<>(PharmaType.class);
+        for (PharmaType type : PharmaType.values()) {
+            groups.put(type, new ConcurrentHashMap<>());
+        }
+        return groups;
+    }
+
+    private static final class Counters {
+
+        private final LongAdder items = new LongAdder();
+        private final LongAdder quantity = new LongAdder();
+        private final LongAdder capacity = new LongAdder();
+
+        private void add(long itemsDelta, long quantityDelta, long capacityDelta) {
+            items.add(itemsDelta);
+            quantity.add(quantityDelta);
+            capacity.add(capacityDelta);
+        }
+    }
+}
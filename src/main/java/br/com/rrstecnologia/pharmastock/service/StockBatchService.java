@@ -0,0 +1,159 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentResultDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.StockAdjustmentStatus;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.PharmaStockBatchRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class StockBatchService {
+
+    private final PharmaRepository pharmaRepository;
+    private final PharmaStockBatchRepository pharmaStockBatchRepository;
+    private final StockDeltaAggregator stockDeltaAggregator;
+    private final StockHolds stockHolds;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    public StockBatchService(PharmaRepository pharmaRepository,
+                             PharmaStockBatchRepository pharmaStockBatchRepository,
+                             StockDeltaAggregator stockDeltaAggregator,
+                             StockHolds stockHolds,
+                             ApplicationEventPublisher eventPublisher,
+                             PlatformTransactionManager transactionManager,
+                             PharmastockProperties pharmastockProperties) {
+        this.pharmaRepository = pharmaRepository;
+        this.pharmaStockBatchRepository = pharmaStockBatchRepository;
+        this.stockDeltaAggregator = stockDeltaAggregator;
+        this.stockHolds = stockHolds;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = pharmastockProperties.getBatch().getChunkSize();
+    }
+
+    public List<StockAdjustmentResultDTO> adjust(List<StockAdjustmentDTO> adjustments) {
+        List<StockAdjustmentResultDTO> results = new ArrayList<>(adjustments.size());
+        for (int from = 0; from < adjustments.size(); from += chunkSize) {
+            List<StockAdjustmentDTO> chunk = adjustments.subList(from, Math.min(from + chunkSize, adjustments.size()));
+            if (stockDeltaAggregator.isEnabled()) {
+                chunk.forEach(adjustment -> results.add(adjustWriteBehind(adjustment)));
+            } else {
+                results.addAll(transactionTemplate.execute(status -> adjustChunk(chunk)));
+            }
+        }
+        return results;
+    }
+
+    private List<StockAdjustmentResultDTO> adjustChunk(List<StockAdjustmentDTO> chunk) {
+        List<StockAdjustmentDTO> orderedChunk = new ArrayList<>(chunk);
+        orderedChunk.sort(Comparator.comparing(StockAdjustmentDTO::getId));
+
+        int[] updateCounts = pharmaStockBatchRepository.adjustQuantities(orderedChunk, this::floorFor);
+        Map<StockAdjustmentDTO, Boolean> applied = new IdentityHashMap<>();
+        for (int i = 0; i < orderedChunk.size(); i++) {
+            applied.put(orderedChunk.get(i), updateCounts[i] != 0);
+        }
+
+        List<Long> ids = orderedChunk.stream()
+                .map(StockAdjustmentDTO::getId)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Pharma> pharmas = pharmaRepository.findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(Pharma::getId, Function.identity()));
+
+        Map<StockAdjustmentDTO, Integer> quantitiesAfter = quantitiesAfter(orderedChunk, applied, pharmas);
+
+        return chunk.stream()
+                .map(adjustment -> resultOf(adjustment, applied.get(adjustment), pharmas.get(adjustment.getId()), quantitiesAfter.get(adjustment)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Quantity right after each applied adjustment, walking the chunk backwards from the final quantity,
+     * so several adjustments of the same pharma in one chunk are reported as separate movements.
+     */
+    private Map<StockAdjustmentDTO, Integer> quantitiesAfter(List<StockAdjustmentDTO> orderedChunk,
+                                                             Map<StockAdjustmentDTO, Boolean> applied,
+                                                             Map<Long, Pharma> pharmas) {
+        Map<StockAdjustmentDTO, Integer> quantitiesAfter = new IdentityHashMap<>();
+        Map<Long, Integer> runningQuantities = new HashMap<>();
+        for (int i = orderedChunk.size() - 1; i >= 0; i--) {
+            StockAdjustmentDTO adjustment = orderedChunk.get(i);
+            Pharma pharma = pharmas.get(adjustment.getId());
+            if (pharma == null || !applied.get(adjustment)) {
+                continue;
+            }
+            int quantityAfter = runningQuantities.getOrDefault(pharma.getId(), pharma.getQuantity());
+            quantitiesAfter.put(adjustment, quantityAfter);
+            runningQuantities.put(pharma.getId(), quantityAfter - adjustment.getDelta());
+        }
+        return quantitiesAfter;
+    }
+
+    private StockAdjustmentResultDTO resultOf(StockAdjustmentDTO adjustment, boolean applied, Pharma pharma, Integer quantityAfter) {
+        if (pharma == null) {
+            return toResult(adjustment, StockAdjustmentStatus.NOT_FOUND, null,
+                    new PharmaNotFoundException(adjustment.getId()).getMessage());
+        }
+        if (!applied) {
+            return toResult(adjustment, StockAdjustmentStatus.STOCK_EXCEEDED, pharma.getQuantity(),
+                    new PharmaStockExceededException(adjustment.getId(), Math.abs(adjustment.getDelta())).getMessage());
+        }
+        PharmaDTO adjustedPharma = pharmaMapper.toDTO(pharma);
+        adjustedPharma.setQuantity(quantityAfter);
+        eventPublisher.publishEvent(PharmaChangedEvent.adjusted(adjustedPharma, adjustment.getDelta(), StockMovementSource.BATCH));
+        return toResult(adjustment, StockAdjustmentStatus.APPLIED, pharma.getQuantity(), null);
+    }
+
+    private StockAdjustmentResultDTO adjustWriteBehind(StockAdjustmentDTO adjustment) {
+        try {
+            PharmaDTO pharmaDTO = stockDeltaAggregator.adjust(adjustment.getId(), adjustment.getDelta(),
+                    () -> floorFor(adjustment), StockMovementSource.BATCH);
+            eventPublisher.publishEvent(PharmaChangedEvent.adjustedWriteBehind(pharmaDTO, adjustment.getDelta(), StockMovementSource.BATCH));
+            return toResult(adjustment, StockAdjustmentStatus.APPLIED, pharmaDTO.getQuantity(), null);
+        } catch (PharmaNotFoundException e) {
+            return toResult(adjustment, StockAdjustmentStatus.NOT_FOUND, null, e.getMessage());
+        } catch (PharmaStockExceededException e) {
+            return toResult(adjustment, StockAdjustmentStatus.STOCK_EXCEEDED, null, e.getMessage());
+        }
+    }
+
+    private int floorFor(StockAdjustmentDTO adjustment) {
+        return adjustment.getDelta() < 0 ? stockHolds.held(adjustment.getId()) : 0;
+    }
+
+    private StockAdjustmentResultDTO toResult(StockAdjustmentDTO adjustment, StockAdjustmentStatus status, Integer quantity, String message) {
+        return StockAdjustmentResultDTO.builder()
+                .id(adjustment.getId())
+                .delta(adjustment.getDelta())
+                .status(status)
+                .quantity(quantity)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,402 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaCacheEvictor;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Opt-in write-behind mode for stock adjustments. Bounds are enforced against an in-memory
+ * reservation per pharma, every acknowledged delta is journaled to disk, and the coalesced deltas
+ * are flushed to the database in JDBC batches on a fixed interval. An adjustment runs no statement
+ * once its pharma is loaded: its stock movement is kept in memory and inserted by the flush, in the
+ * same transaction as the quantities and the watermark.
+ */
+@Slf4j
+@Component
+public class StockDeltaAggregator {
+
+    private static final String FLUSH_SQL = "update pharma set quantity = quantity + ? where id = ?";
+    private static final String SELECT_WATERMARK_SQL = "select applied_through from stock_journal_watermark where journal = ?";
+    private static final String UPDATE_WATERMARK_SQL = "update stock_journal_watermark set applied_through = ? where journal = ?";
+    private static final String INSERT_WATERMARK_SQL = "insert into stock_journal_watermark (journal, applied_through) values (?, ?)";
+
+    private final PharmaRepository pharmaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final StockMovementBatchRepository stockMovementBatchRepository;
+    private final PharmaCacheEvictor pharmaCacheEvictor;
+    private final TransactionTemplate transactionTemplate;
+    private final PharmastockProperties.WriteBehind properties;
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    private final ConcurrentMap<Long, StockCounter> counters = new ConcurrentHashMap<>();
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final Queue<StockMovement> movements = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Integer> unflushed = new ConcurrentHashMap<>();
+    private final List<StockMovement> unflushedMovements = new ArrayList<>();
+    private final List<Path> unflushedSegments = new ArrayList<>();
+
+    private String journalKey;
+    private StockJournal journal;
+    private ScheduledExecutorService flusher;
+
+    public StockDeltaAggregator(PharmaRepository pharmaRepository,
+                                JdbcTemplate jdbcTemplate,
+                                StockMovementBatchRepository stockMovementBatchRepository,
+                                PharmaCacheEvictor pharmaCacheEvictor,
+                                PlatformTransactionManager transactionManager,
+                                PharmastockProperties pharmastockProperties) {
+        this.pharmaRepository = pharmaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.stockMovementBatchRepository = stockMovementBatchRepository;
+        this.pharmaCacheEvictor = pharmaCacheEvictor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = pharmastockProperties.getWriteBehind();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Path journalDirectory = Paths.get(properties.getJournalDirectory());
+        journalKey = journalDirectory.toAbsolutePath().normalize().toString();
+        long appliedThrough = appliedThrough();
+        journal = new StockJournal(journalDirectory, appliedThrough);
+        recover(appliedThrough);
+        long intervalMillis = properties.getFlushInterval().toMillis();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        flusher.shutdown();
+        flush();
+        journal.close();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * @param floor quantity the adjustment may not take the stock below, e.g. the units held by reservations.
+     *              A decrement reads it again once applied and backs out if it went under it.
+     * @param source entry point recorded on the stock movement
+     */
+    public PharmaDTO adjust(Long id, int delta, IntSupplier floor, StockMovementSource source) throws PharmaNotFoundException, PharmaStockExceededException {
+        flushLock.readLock().lock();
+        try {
+            StockCounter counter = counterFor(id);
+            OptionalInt quantity = counter.reserve(delta, floor);
+            if (!quantity.isPresent()) {
+                throw new PharmaStockExceededException(id, Math.abs(delta));
+            }
+            try {
+                journal.append(id, delta);
+            } catch (IOException e) {
+                counter.cancel(delta);
+                throw new UncheckedIOException("Could not journal stock adjustment for pharma " + id, e);
+            }
+            movements.add(new StockMovement(null, id, delta, quantity.getAsInt(), PharmaChangeType.ADJUSTED, source, Instant.now()));
+            return counter.snapshot(pharmaMapper, quantity.getAsInt());
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Live quantity of the pharma, including the deltas not flushed yet.
+     */
+    public int quantity(Long id) throws PharmaNotFoundException {
+        flushLock.readLock().lock();
+        try {
+            return counterFor(id).quantity.get();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the deltas not flushed yet to a quantity loaded from the database. Right after a flush
+     * commits and before its deltas are cleared, a row read in between may briefly count them twice.
+     */
+    public void applyPendingQuantity(PharmaDTO pharmaDTO) {
+        if (!isEnabled()) {
+            return;
+        }
+        flushLock.readLock().lock();
+        try {
+            StockCounter counter = counters.get(pharmaDTO.getId());
+            int pending = unflushed.getOrDefault(pharmaDTO.getId(), 0) + (counter != null ? counter.pending.intValue() : 0);
+            pharmaDTO.setQuantity(pharmaDTO.getQuantity() + pending);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    public void evict(Long id) {
+        counters.remove(id);
+    }
+
+    /**
+     * Runs {@code rebuild} with adjustments blocked and every acknowledged delta and movement flushed,
+     * then drops the counter of the pharma. A quantity rebuilt from the ledger thus neither misses a
+     * delta nor has one land on top of it; adjustments wait until the rebuild commits.
+     */
+    public synchronized <T> T rebuild(Long id, Supplier<T> rebuild) {
+        flushLock.writeLock().lock();
+        try {
+            flush();
+            if (!unflushed.isEmpty() || !unflushedMovements.isEmpty()) {
+                throw new IllegalStateException("Could not flush write-behind stock deltas before rebuilding pharma " + id);
+            }
+            T rebuilt = rebuild.get();
+            counters.remove(id);
+            return rebuilt;
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true when drained deltas are still waiting for a successful flush
+     */
+    public synchronized boolean hasUnflushedDeltas() {
+        return !unflushed.isEmpty();
+    }
+
+    public synchronized void flush() {
+        Map<Long, Integer> batch;
+        List<StockMovement> batchMovements;
+        flushLock.writeLock().lock();
+        try {
+            counters.forEach((id, counter) -> {
+                int delta = counter.drain();
+                if (delta != 0) {
+                    unflushed.merge(id, delta, Integer::sum);
+                }
+            });
+            for (StockMovement movement = movements.poll(); movement != null; movement = movements.poll()) {
+                unflushedMovements.add(movement);
+            }
+            if (unflushed.isEmpty() && unflushedMovements.isEmpty()) {
+                counters.values().removeIf(counter -> counter.pending.sum() == 0);
+                return;
+            }
+            unflushedSegments.add(journal.rotate());
+            batch = new TreeMap<>(unflushed);
+            batchMovements = new ArrayList<>(unflushedMovements);
+        } catch (IOException e) {
+            log.error("Could not rotate stock journal, deferring flush", e);
+            return;
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+
+        try {
+            write(batch, batchMovements, StockJournal.sequenceOf(unflushedSegments.get(unflushedSegments.size() - 1)));
+        } catch (RuntimeException e) {
+            log.warn("Could not flush {} stock deltas, retrying on next interval", batch.size(), e);
+            return;
+        }
+        flushLock.writeLock().lock();
+        try {
+            unflushed.clear();
+            unflushedMovements.clear();
+            counters.values().removeIf(counter -> counter.pending.sum() == 0);
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+        deleteSegments(unflushedSegments);
+        unflushedSegments.clear();
+    }
+
+    /**
+     * Applies the segments a previous run left behind. Segments up to the watermark were committed
+     * before the crash and are only deleted. The movements of the others were lost with the process,
+     * so each pharma gets one movement for its recovered delta.
+     */
+    private void recover(long appliedThrough) throws IOException {
+        List<Path> applied = new ArrayList<>();
+        List<Path> pending = new ArrayList<>();
+        for (Path segment : journal.closedSegments()) {
+            if (StockJournal.sequenceOf(segment) <= appliedThrough) {
+                applied.add(segment);
+            } else {
+                pending.add(segment);
+            }
+        }
+        deleteSegments(applied);
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> deltas = new TreeMap<>();
+        for (Path segment : pending) {
+            StockJournal.read(segment).forEach((id, delta) -> deltas.merge(id, delta, Integer::sum));
+        }
+        List<StockMovement> recovered = new ArrayList<>();
+        Instant now = Instant.now();
+        for (Pharma pharma : pharmaRepository.findAllById(deltas.keySet())) {
+            int delta = deltas.get(pharma.getId());
+            recovered.add(new StockMovement(null, pharma.getId(), delta, pharma.getQuantity() + delta,
+                    PharmaChangeType.ADJUSTED, StockMovementSource.JOURNAL, now));
+        }
+        write(deltas, recovered, StockJournal.sequenceOf(pending.get(pending.size() - 1)));
+        deleteSegments(pending);
+        log.info("Recovered {} journaled stock deltas from {} segments", deltas.size(), pending.size());
+    }
+
+    /**
+     * Writes the deltas and their movements and moves the watermark to {@code throughSegment} in one
+     * transaction.
+     */
+    private void write(Map<Long, Integer> deltas, List<StockMovement> deltaMovements, long throughSegment) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!deltas.isEmpty()) {
+                pharmaCacheEvictor.evictPharmas(deltas.keySet());
+                jdbcTemplate.batchUpdate(FLUSH_SQL, deltas.entrySet(), properties.getBatchSize(),
+                        (ps, entry) -> {
+                            ps.setInt(1, entry.getValue());
+                            ps.setLong(2, entry.getKey());
+                        });
+            }
+            if (!deltaMovements.isEmpty()) {
+                stockMovementBatchRepository.insertAll(deltaMovements);
+            }
+            if (jdbcTemplate.update(UPDATE_WATERMARK_SQL, throughSegment, journalKey) == 0) {
+                jdbcTemplate.update(INSERT_WATERMARK_SQL, journalKey, throughSegment);
+            }
+        });
+    }
+
+    private long appliedThrough() {
+        List<Long> watermark = jdbcTemplate.queryForList(SELECT_WATERMARK_SQL, Long.class, journalKey);
+        return watermark.isEmpty() ? 0L : watermark.get(0);
+    }
+
+    private void deleteSegments(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete flushed stock journal segment " + segment, e);
+            }
+        }
+    }
+
+    /**
+     * Called with the read lock held, so a counter cannot be dropped by a flush between being looked up
+     * and taking the delta. A missing counter has all its deltas committed, so it is seeded from the row.
+     */
+    private StockCounter counterFor(Long id) throws PharmaNotFoundException {
+        StockCounter counter = counters.get(id);
+        if (counter != null) {
+            return counter;
+        }
+        Pharma pharma = pharmaRepository.findById(id)
+                .orElseThrow(() -> new PharmaNotFoundException(id));
+        return counters.computeIfAbsent(id, key -> new StockCounter(pharma));
+    }
+
+    private static final class StockCounter {
+
+        private final Pharma template;
+        private final int max;
+        private final AtomicInteger quantity;
+        private final LongAdder pending = new LongAdder();
+
+        private StockCounter(Pharma template) {
+            this.template = template;
+            this.max = template.getMax();
+            this.quantity = new AtomicInteger(template.getQuantity());
+        }
+
+        /**
+         * A hold is registered before its quantity is read, so reading the floor again after the
+         * decrement is applied means either the decrement sees the hold or the hold sees the decrement.
+         *
+         * @return the quantity right after this delta, or empty when it is out of bounds
+         */
+        private OptionalInt reserve(int delta, IntSupplier floor) {
+            int current;
+            int next;
+            do {
+                current = quantity.get();
+                next = current + delta;
+                if (next < floor.getAsInt() || next > max) {
+                    return OptionalInt.empty();
+                }
+            } while (!quantity.compareAndSet(current, next));
+            pending.add(delta);
+            if (delta < 0 && next < floor.getAsInt()) {
+                cancel(delta);
+                return OptionalInt.empty();
+            }
+            return OptionalInt.of(next);
+        }
+
+        private void cancel(int delta) {
+            quantity.addAndGet(-delta);
+            pending.add(-delta);
+        }
+
+        private int drain() {
+            return (int) pending.sumThenReset();
+        }
+
+        private PharmaDTO snapshot(PharmaMapper pharmaMapper, int quantity) {
+            PharmaDTO pharmaDTO = pharmaMapper.toDTO(template);
+            pharmaDTO.setQuantity(quantity);
+            return pharmaDTO;
+        }
+    }
+}
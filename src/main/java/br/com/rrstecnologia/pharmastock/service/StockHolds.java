@@ -0,0 +1,28 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Units held by open reservations, per pharma. ReservationService keeps it up to date, and PharmaService
+ * reads it so a direct decrement never takes units that are on hold.
+ */
+@Component
+public class StockHolds {
+
+    private final Map<Long, Integer> heldQuantities = new ConcurrentHashMap<>();
+
+    public int held(Long pharmaId) {
+        return heldQuantities.getOrDefault(pharmaId, 0);
+    }
+
+    void add(Long pharmaId, int quantity) {
+        heldQuantities.merge(pharmaId, quantity, Integer::sum);
+    }
+
+    void remove(Long pharmaId, int quantity) {
+        heldQuantities.computeIfPresent(pharmaId, (id, held) -> held == quantity ? null : held - quantity);
+    }
+}
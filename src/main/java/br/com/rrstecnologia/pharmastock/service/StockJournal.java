@@ -0,0 +1,139 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only file of acknowledged stock deltas. Each record is fsynced before {@link #append}
+ * returns; concurrent appenders share a single {@code force} call (group commit).
+ */
+public class StockJournal implements Closeable {
+
+    private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "stock-journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final Object syncMonitor = new Object();
+
+    private FileChannel channel;
+    private Path segment;
+    private long sequence;
+    private long writtenPosition;
+    private volatile long syncedPosition;
+
+    public StockJournal(Path directory) throws IOException {
+        this(directory, 0L);
+    }
+
+    /**
+     * @param appliedThrough last segment sequence already applied to the database; new segments are
+     *                       numbered after it even when its file is gone, so they are never mistaken
+     *                       for applied ones
+     */
+    public StockJournal(Path directory, long appliedThrough) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        long lastSequence = listSegments().stream()
+                .mapToLong(StockJournal::sequenceOf)
+                .max()
+                .orElse(0L);
+        openSegment(Math.max(lastSequence, appliedThrough) + 1);
+    }
+
+    public void append(long id, int delta) throws IOException {
+        long position;
+        synchronized (this) {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).putLong(id).putInt(delta);
+            record.flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            writtenPosition += RECORD_SIZE;
+            position = writtenPosition;
+        }
+        sync(position);
+    }
+
+    public synchronized Path rotate() throws IOException {
+        Path closedSegment = segment;
+        channel.force(false);
+        channel.close();
+        openSegment(sequence + 1);
+        return closedSegment;
+    }
+
+    public synchronized List<Path> closedSegments() throws IOException {
+        return listSegments().stream()
+                .filter(path -> !path.equals(segment))
+                .collect(Collectors.toList());
+    }
+
+    public static Map<Long, Integer> read(Path segment) throws IOException {
+        Map<Long, Integer> deltas = new TreeMap<>();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        while (buffer.remaining() >= RECORD_SIZE) {
+            deltas.merge(buffer.getLong(), buffer.getInt(), Integer::sum);
+        }
+        return deltas;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private void sync(long position) throws IOException {
+        if (syncedPosition >= position) {
+            return;
+        }
+        synchronized (syncMonitor) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            long target;
+            synchronized (this) {
+                target = writtenPosition;
+            }
+            channel.force(false);
+            syncedPosition = target;
+        }
+    }
+
+    private void openSegment(long nextSequence) throws IOException {
+        sequence = nextSequence;
+        segment = directory.resolve(SEGMENT_PREFIX + nextSequence + SEGMENT_SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writtenPosition = channel.size();
+        syncedPosition = writtenPosition;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String fileName = path.getFileName().toString();
+                        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(StockJournal::sequenceOf))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public static long sequenceOf(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,77 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementBatchRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Appends a stock movement for every change event. Movements raised inside a transaction are buffered
+ * and inserted with a single JDBC batch right before it commits, so they are durable exactly when the
+ * change is and cost one round trip per transaction rather than one per movement. Write-behind
+ * adjustments are skipped here; the aggregator records them in the transaction that flushes their deltas.
+ */
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockLedger {
+
+    private final StockMovementBatchRepository stockMovementBatchRepository;
+
+    @EventListener
+    public void onPharmaChanged(PharmaChangedEvent event) {
+        if (event.getSource() == StockMovementSource.REPLAY || event.isWriteBehind()) {
+            return;
+        }
+        StockMovement movement = toMovement(event);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stockMovementBatchRepository.insertAll(Collections.singletonList(movement));
+            return;
+        }
+        pendingMovements().add(movement);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<StockMovement> pendingMovements() {
+        List<StockMovement> pending = (List<StockMovement>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<StockMovement> movements = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, movements);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    stockMovementBatchRepository.insertAll(movements);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(StockLedger.this);
+                }
+            });
+            pending = movements;
+        }
+        return pending;
+    }
+
+    private static StockMovement toMovement(PharmaChangedEvent event) {
+        int quantity = event.getType() == PharmaChangeType.DELETED ? 0 : event.getPharma().getQuantity();
+        return new StockMovement(null,
+                event.getPharma().getId(),
+                event.getDelta(),
+                quantity,
+                event.getType(),
+                event.getSource(),
+                Instant.now());
+    }
+}
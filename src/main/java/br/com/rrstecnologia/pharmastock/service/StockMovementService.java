@@ -0,0 +1,75 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockMovementDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.mapper.StockMovementMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+@Service
+public class StockMovementService {
+
+    private final StockMovementRepository stockMovementRepository;
+    private final PharmaRepository pharmaRepository;
+    private final StockDeltaAggregator stockDeltaAggregator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final StockMovementMapper stockMovementMapper = StockMovementMapper.INSTANCE;
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    public StockMovementService(StockMovementRepository stockMovementRepository,
+                                PharmaRepository pharmaRepository,
+                                StockDeltaAggregator stockDeltaAggregator,
+                                ApplicationEventPublisher eventPublisher,
+                                PlatformTransactionManager transactionManager) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.pharmaRepository = pharmaRepository;
+        this.stockDeltaAggregator = stockDeltaAggregator;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public Slice<StockMovementDTO> history(Long pharmaId, Pageable pageable) {
+        return stockMovementRepository.findByPharmaIdOrderByIdDesc(pharmaId, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()))
+                .map(stockMovementMapper::toDTO);
+    }
+
+    /**
+     * Rebuilds the quantity of a pharma as the sum of its ledger deltas. The row stays locked from the
+     * read to the commit, so an adjustment arriving meanwhile waits instead of being overwritten. In
+     * write-behind mode the rebuild runs under the aggregator's flush lock, after buffered deltas and
+     * their movements are flushed, so none is lost or counted twice.
+     */
+    public PharmaDTO replay(Long pharmaId) throws PharmaNotFoundException {
+        Supplier<Optional<PharmaDTO>> rebuild = () -> transactionTemplate.execute(status ->
+                pharmaRepository.findByIdForUpdate(pharmaId).map(this::rebuildQuantity));
+        Optional<PharmaDTO> replayedPharma = stockDeltaAggregator.isEnabled()
+                ? stockDeltaAggregator.rebuild(pharmaId, rebuild)
+                : rebuild.get();
+        return replayedPharma.orElseThrow(() -> new PharmaNotFoundException(pharmaId));
+    }
+
+    private PharmaDTO rebuildQuantity(Pharma pharma) {
+        int rebuiltQuantity = (int) stockMovementRepository.sumDeltas(pharma.getId());
+        int delta = rebuiltQuantity - pharma.getQuantity();
+        pharma.setQuantity(rebuiltQuantity);
+        PharmaDTO replayedPharma = pharmaMapper.toDTO(pharmaRepository.save(pharma));
+        eventPublisher.publishEvent(PharmaChangedEvent.adjusted(replayedPharma, delta, StockMovementSource.REPLAY));
+        return replayedPharma;
+    }
+}
@@ -0,0 +1,73 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timer wheel: a deadline lands in the bucket of its tick modulo the wheel size, so scheduling
+ * and cancelling are O(1) and each tick only looks at its own bucket. Deadlines further away than one
+ * turn of the wheel share a bucket with nearer ones and are kept until their deadline passes.
+ */
+final class TimerWheel<K> {
+
+    private final long tickMillis;
+    private final List<Map<K, Long>> buckets;
+    private final Map<K, Long> scheduledTicks = new HashMap<>();
+    private long currentTick;
+
+    TimerWheel(long tickMillis, int size, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new HashMap<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    synchronized void schedule(K key, long deadlineMillis) {
+        cancel(key);
+        long tick = Math.max(deadlineMillis / tickMillis, currentTick);
+        bucket(tick).put(key, deadlineMillis);
+        scheduledTicks.put(key, tick);
+    }
+
+    synchronized void cancel(K key) {
+        Long tick = scheduledTicks.remove(key);
+        if (tick != null) {
+            bucket(tick).remove(key);
+        }
+    }
+
+    synchronized int size() {
+        return scheduledTicks.size();
+    }
+
+    /**
+     * @return the keys whose deadline is at or before {@code nowMillis}, removed from the wheel
+     */
+    synchronized List<K> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        long firstTick = Math.max(currentTick, targetTick - buckets.size() + 1);
+        List<K> expired = new ArrayList<>();
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            Iterator<Map.Entry<K, Long>> entries = bucket(tick).entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<K, Long> entry = entries.next();
+                if (entry.getValue() <= nowMillis) {
+                    expired.add(entry.getKey());
+                    scheduledTicks.remove(entry.getKey());
+                    entries.remove();
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+
+    private Map<K, Long> bucket(long tick) {
+        return buckets.get((int) (tick % buckets.size()));
+    }
+}
@@ -0,0 +1,69 @@
+-- Schema of the entities in br.com.rrstecnologia.pharmastock.entity. Hibernate only validates it with
+-- the postgres profile, so any entity change needs a new versioned migration next to this one.
+
+create sequence pharma_sequence start with 1 increment by 50;
+
+create table pharma (
+    id bigint not null,
+    name varchar(255) not null,
+    brand varchar(255) not null,
+    max integer not null,
+    quantity integer not null,
+    type varchar(255) not null,
+    reorder_point integer not null,
+    constraint pk_pharma primary key (id),
+    constraint uk_pharma_name unique (name)
+);
+
+create index idx_pharma_type on pharma (type);
+create index idx_pharma_brand on pharma (brand);
+create index idx_pharma_quantity on pharma (quantity);
+
+create table pharma_stock (
+    location varchar(32) not null,
+    pharma_id bigint not null,
+    max integer not null,
+    quantity integer not null,
+    constraint pk_pharma_stock primary key (location, pharma_id),
+    constraint fk_pharma_stock_pharma foreign key (pharma_id) references pharma (id) on delete cascade
+);
+
+create index idx_pharma_stock_pharma on pharma_stock (pharma_id);
+
+create table stock_movement (
+    id bigint generated by default as identity,
+    pharma_id bigint not null,
+    delta integer not null,
+    quantity integer not null,
+    type varchar(255) not null,
+    source varchar(255) not null,
+    created_at timestamp not null,
+    constraint pk_stock_movement primary key (id)
+);
+
+create index idx_stock_movement_pharma on stock_movement (pharma_id, id);
+
+create table stock_journal_watermark (
+    journal varchar(1024) not null,
+    applied_through bigint not null,
+    constraint pk_stock_journal_watermark primary key (journal)
+);
+
+create table idempotency_record (
+    idempotency_key varchar(255) not null,
+    fingerprint varchar(1024) not null,
+    status integer,
+    content_type varchar(255),
+    body bytea,
+    created_at timestamp not null,
+    lease_expires_at timestamp,
+    constraint pk_idempotency_record primary key (idempotency_key)
+);
+
+create index idx_idempotency_record_created_at on idempotency_record (created_at);
+
+create table replica_heartbeat (
+    id integer not null,
+    beat_at bigint not null,
+    constraint pk_replica_heartbeat primary key (id)
+);
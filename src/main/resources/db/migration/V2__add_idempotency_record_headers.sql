@@ -0,0 +1,3 @@
+-- Response headers replayed with a stored idempotent response (Location, ETag, X-Total-Count, Vary).
+
+alter table idempotency_record add column headers varchar(2048);
@@ -25,12 +25,16 @@ public class PharmaDTOBuilder {
     @Builder.Default
     private PharmaType type = PharmaType.EMS;
 
+    @Builder.Default
+    private int reorderPoint = 0;
+
     public PharmaDTO toPharmaDTO() {
         return new PharmaDTO(id,
                 name,
                 brand,
                 max,
                 quantity,
-                type);
+                type,
+                reorderPoint);
     }
 }
@@ -0,0 +1,59 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ExecutionModeConfigTest {
+
+    private static final int VIRTUAL_THREADS_RELEASE = 21;
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(ExecutionModeConfig.class);
+
+    @Test
+    void whenModeIsPlatformThenTomcatKeepsItsWorkerPool() {
+        contextRunner.withPropertyValues("pharmastock.execution.mode=platform")
+                .run(context -> assertThat(context.getBeansOfType(TomcatProtocolHandlerCustomizer.class).isEmpty(), is(true)));
+    }
+
+    @Test
+    void whenModeIsVirtualThenRequestsRunOnVirtualThreadsUntilShutdown() {
+        assumeTrue(Runtime.version().feature() >= VIRTUAL_THREADS_RELEASE);
+        ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+        ArgumentCaptor<Executor> executorCaptor = ArgumentCaptor.forClass(Executor.class);
+
+        contextRunner.withPropertyValues("pharmastock.execution.mode=virtual").run(context -> {
+            context.getBean(ExecutionModeConfig.VirtualThreadCustomizer.class).customize(protocolHandler);
+            verify(protocolHandler).setExecutor(executorCaptor.capture());
+            ExecutorService executor = (ExecutorService) executorCaptor.getValue();
+            assertThat(executor.submit(() -> Thread.currentThread().toString()).get(), containsString("VirtualThread"));
+        });
+
+        assertThat(((ExecutorService) executorCaptor.getValue()).isShutdown(), is(true));
+    }
+
+    @Test
+    void whenModeIsVirtualOnAnOlderRuntimeThenStartupFails() {
+        assumeFalse(Runtime.version().feature() >= VIRTUAL_THREADS_RELEASE);
+
+        contextRunner.withPropertyValues("pharmastock.execution.mode=virtual").run(context -> {
+            assertThat(context.getStartupFailure(), is(notNullValue()));
+            assertThat(context.getStartupFailure().getMessage(), containsString("requires Java 21"));
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package br.com.rrstecnologia.pharmastock.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replica;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection replicaConnection;
+
+    @Mock
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        lenient().when(primary.getConnection()).thenReturn(primaryConnection);
+        lenient().when(replica.getConnection()).thenReturn(replicaConnection);
+        replicaRoutingDataSource = new ReplicaRoutingDataSource(primary, replica, replicaLagMonitor);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        completeTransaction();
+        ReadRouting.clear();
+    }
+
+    @Test
+    void whenTransactionIsReadOnlyAndReplicaIsFreshThenReplicaIsUsed() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReadRouting.allowReplica(100L);
+        when(replicaLagMonitor.canServe(100L)).thenReturn(true);
+
+        assertThat(replicaRoutingDataSource.getConnection(), is(sameInstance(replicaConnection)));
+    }
+
+    @Test
+    void whenTransactionWritesThenPrimaryIsUsed() throws SQLException {
+        ReadRouting.allowReplica(0L);
+
+        assertThat(replicaRoutingDataSource.getConnection(), is(sameInstance(primaryConnection)));
+    }
+
+    @Test
+    void whenReplicaHasNotReplayedTheRequiredVersionThenPrimaryIsUsed() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReadRouting.allowReplica(200L);
+        when(replicaLagMonitor.canServe(200L)).thenReturn(false);
+
+        assertThat(replicaRoutingDataSource.getConnection(), is(sameInstance(primaryConnection)));
+    }
+
+    @Test
+    void whenClientWroteRecentlyThenPrimaryIsUsed() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReadRouting.allowReplica(0L);
+        ReadRouting.requirePrimary();
+
+        assertThat(replicaRoutingDataSource.getConnection(), is(sameInstance(primaryConnection)));
+    }
+
+    @Test
+    void whenReadOnlyTransactionDidNotOptInThenPrimaryIsUsed() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(replicaRoutingDataSource.getConnection(), is(sameInstance(primaryConnection)));
+    }
+
+    @Test
+    void whenTransactionCompletesThenItsOptInIsDropped() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReadRouting.allowReplica(100L);
+        completeTransaction();
+
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(ReadRouting.replicaFreshness(), is(nullValue()));
+        assertThat(replicaRoutingDataSource.getConnection(), is(sameInstance(primaryConnection)));
+    }
+
+    private static void completeTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            TransactionSynchronizationManager.clear();
+        }
+    }
+}
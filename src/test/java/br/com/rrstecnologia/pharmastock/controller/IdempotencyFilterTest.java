@@ -0,0 +1,171 @@
+package br.com.rrstecnologia.pharmastock.controller;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.repository.IdempotencyRecordRepository;
+import br.com.rrstecnologia.pharmastock.service.IdempotencyStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IdempotencyFilterTest {
+
+    private static final String DECREMENT_URL = "/api/v1/pharmas/1/decrement";
+    private static final String QUANTITY_BODY = "{\"quantity\":5}";
+
+    private IdempotencyFilter idempotencyFilter;
+    private AtomicInteger executions;
+    private FilterChain decrementChain;
+
+    @BeforeEach
+    void setUp() {
+        PharmastockProperties properties = new PharmastockProperties();
+        properties.getIdempotency().setMaxBodySize(64);
+        idempotencyFilter = new IdempotencyFilter(new IdempotencyStore(mock(IdempotencyRecordRepository.class), properties), properties);
+        executions = new AtomicInteger();
+        decrementChain = (request, response) -> {
+            String body = StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            ((HttpServletResponse) response).setHeader(HttpHeaders.LOCATION, "/api/v1/pharmas/1");
+            ((HttpServletResponse) response).addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            ((HttpServletResponse) response).addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            response.getWriter().write("{\"execution\":" + executions.incrementAndGet() + ",\"request\":" + body + "}");
+        };
+    }
+
+    @Test
+    void whenRequestIsRetriedWithSameKeyThenOriginalResponseIsReplayed() throws Exception {
+        MockHttpServletResponse first = perform("key-1", QUANTITY_BODY);
+        MockHttpServletResponse retry = perform("key-1", QUANTITY_BODY);
+
+        assertThat(executions.get(), is(equalTo(1)));
+        assertThat(retry.getContentAsString(), is(equalTo(first.getContentAsString())));
+        assertThat(retry.getHeader(IdempotencyFilter.IDEMPOTENT_REPLAYED_HEADER), is(equalTo("true")));
+        assertThat(first.getHeader(IdempotencyFilter.IDEMPOTENT_REPLAYED_HEADER), is(nullValue()));
+    }
+
+    @Test
+    void whenResponseIsReplayedThenItsHeadersAreReplayed() throws Exception {
+        perform("key-1", QUANTITY_BODY);
+        MockHttpServletResponse retry = perform("key-1", QUANTITY_BODY);
+
+        assertThat(retry.getHeader(HttpHeaders.LOCATION), is(equalTo("/api/v1/pharmas/1")));
+        assertThat(retry.getHeader(HttpHeaders.VARY), is(equalTo(HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING)));
+    }
+
+    @Test
+    void whenResponseCannotBeStoredThenKeyStaysClaimed() throws Exception {
+        PharmastockProperties properties = new PharmastockProperties();
+        properties.getIdempotency().setPersistent(true);
+        properties.getIdempotency().setInFlightWait(Duration.ofMillis(50));
+        IdempotencyRecordRepository idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+        when(idempotencyRecordRepository.insertPending(eq("key-1"), anyString(), any(Instant.class), any(Instant.class))).thenReturn(true);
+        doThrow(new IllegalStateException("database unavailable")).when(idempotencyRecordRepository)
+                .complete(eq("key-1"), anyInt(), anyString(), anyString(), any(byte[].class));
+        idempotencyFilter = new IdempotencyFilter(new IdempotencyStore(idempotencyRecordRepository, properties), properties);
+
+        MockHttpServletResponse first = perform("key-1", QUANTITY_BODY);
+        MockHttpServletResponse retry = perform("key-1", QUANTITY_BODY);
+
+        assertThat(first.getStatus(), is(equalTo(HttpStatus.OK.value())));
+        assertThat(retry.getStatus(), is(equalTo(HttpStatus.CONFLICT.value())));
+        assertThat(executions.get(), is(equalTo(1)));
+        verify(idempotencyRecordRepository, never()).delete("key-1");
+    }
+
+    @Test
+    void whenKeyIsReusedWithAnotherBodyThenUnprocessableEntityIsReturned() throws Exception {
+        perform("key-1", QUANTITY_BODY);
+        MockHttpServletResponse reused = perform("key-1", "{\"quantity\":7}");
+
+        assertThat(reused.getStatus(), is(equalTo(HttpStatus.UNPROCESSABLE_ENTITY.value())));
+        assertThat(executions.get(), is(equalTo(1)));
+    }
+
+    @Test
+    void whenRequestFailsThenRetryRunsAgain() throws Exception {
+        MockHttpServletRequest request = request("key-1", QUANTITY_BODY);
+        idempotencyFilter.doFilter(request, new MockHttpServletResponse(),
+                (servletRequest, servletResponse) -> ((HttpServletResponse) servletResponse).sendError(HttpStatus.BAD_REQUEST.value()));
+
+        perform("key-1", QUANTITY_BODY);
+
+        assertThat(executions.get(), is(equalTo(1)));
+    }
+
+    @Test
+    void whenBodyExceedsTheLimitThenPayloadTooLargeIsReturned() throws Exception {
+        MockHttpServletResponse response = perform("key-1", "{\"quantity\":5,\"padding\":\"" + new String(new char[64]).replace('\0', 'x') + "\"}");
+
+        assertThat(response.getStatus(), is(equalTo(HttpStatus.PAYLOAD_TOO_LARGE.value())));
+        assertThat(executions.get(), is(equalTo(0)));
+    }
+
+    @Test
+    void whenBodyIsReadWithAListenerThenItIsDeliveredFromTheCache() throws Exception {
+        StringBuilder events = new StringBuilder();
+        idempotencyFilter.doFilter(request("key-1", QUANTITY_BODY), new MockHttpServletResponse(), (request, response) -> {
+            ServletInputStream inputStream = request.getInputStream();
+            inputStream.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    events.append(StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    events.append(" done");
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    events.append(" error");
+                }
+            });
+        });
+
+        assertThat(events.toString(), is(equalTo(QUANTITY_BODY + " done")));
+    }
+
+    private MockHttpServletResponse perform(String key, String body) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        idempotencyFilter.doFilter(request(key, body), response, decrementChain);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", DECREMENT_URL);
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
@@ -1,29 +1,74 @@
 package br.com.rrstecnologia.pharmastock.controller;
 
 import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.WireFormatConfig;
+import br.com.rrstecnologia.pharmastock.dto.ImportReportDTO;
+import br.com.rrstecnologia.pharmastock.dto.LocationStockDTO;
+import br.com.rrstecnologia.pharmastock.dto.LowStockDTO;
 import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaFilterDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaSummaryDTO;
 import br.com.rrstecnologia.pharmastock.dto.QuantityDTO;
+import br.com.rrstecnologia.pharmastock.dto.ReservationDTO;
+import br.com.rrstecnologia.pharmastock.dto.ReservationRequestDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentResultDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAggregateDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockBatchDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockMovementDTO;
+import br.com.rrstecnologia.pharmastock.enums.LowStockStatus;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.PharmaImportFormat;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.enums.StockAdjustmentStatus;
+import br.com.rrstecnologia.pharmastock.enums.StockAggregateGrouping;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
 import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.exception.ReservationNotFoundException;
+import br.com.rrstecnologia.pharmastock.service.LocationStockService;
+import br.com.rrstecnologia.pharmastock.service.LowStockMonitor;
+import br.com.rrstecnologia.pharmastock.service.PharmaChangeStream;
+import br.com.rrstecnologia.pharmastock.service.PharmaExportService;
+import br.com.rrstecnologia.pharmastock.service.PharmaImportService;
+import br.com.rrstecnologia.pharmastock.service.PharmaNameIndex;
 import br.com.rrstecnologia.pharmastock.service.PharmaService;
+import br.com.rrstecnologia.pharmastock.service.ReservationService;
+import br.com.rrstecnologia.pharmastock.service.StockAggregateService;
+import br.com.rrstecnologia.pharmastock.service.StockBatchService;
+import br.com.rrstecnologia.pharmastock.service.StockMovementService;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 
 import static br.com.rrstecnologia.pharmastock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -35,12 +80,54 @@ public class PharmaControllerTest {
     private static final long INVALID_PHARMA_ID = 2l;
     private static final String PHARMA_API_SUBPATH_INCREMENT_URL = "/increment";
     private static final String PHARMA_API_SUBPATH_DECREMENT_URL = "/decrement";
+    private static final String PHARMA_API_SUBPATH_STOCK_BATCH_URL = "/stock:batch";
+    private static final String PHARMA_API_SUBPATH_IMPORT_URL = "/import";
+    private static final String PHARMA_API_SUBPATH_EXPORT_URL = "/export";
+    private static final String PHARMA_API_SUBPATH_SEARCH_URL = "/search";
+    private static final String PHARMA_API_SUBPATH_MOVEMENTS_URL = "/movements";
+    private static final String PHARMA_API_SUBPATH_REPLAY_URL = "/stock:replay";
+    private static final String PHARMA_API_SUBPATH_LOW_STOCK_URL = "/low-stock";
+    private static final String PHARMA_API_SUBPATH_CHANGES_URL = "/changes";
+    private static final String PHARMA_API_SUBPATH_LOCATIONS_URL = "/locations/";
+    private static final String VALID_LOCATION = "loja-01";
+    private static final String PHARMA_API_SUBPATH_RESERVATIONS_URL = "/reservations";
+    private static final String RESERVATION_ID = "5b0f4a8e-7d0c-4a47-9a43-3f1c2d9e8b10";
 
     private MockMvc mockMvc;
 
     @Mock
     private PharmaService pharmaService;
 
+    @Mock
+    private StockBatchService stockBatchService;
+
+    @Mock
+    private PharmaImportService pharmaImportService;
+
+    @Mock
+    private PharmaExportService pharmaExportService;
+
+    @Mock
+    private PharmaNameIndex pharmaNameIndex;
+
+    @Mock
+    private StockMovementService stockMovementService;
+
+    @Mock
+    private LowStockMonitor lowStockMonitor;
+
+    @Mock
+    private PharmaChangeStream pharmaChangeStream;
+
+    @Mock
+    private LocationStockService locationStockService;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private StockAggregateService stockAggregateService;
+
     @InjectMocks
     private PharmaController pharmaController;
 
@@ -103,29 +190,261 @@ public class PharmaControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void whenGETIsCalledWithCurrentETagThenNotModifiedIsReturned() throws Exception {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+
+        when(pharmaService.version(pharmaDTO.getName())).thenReturn(7L);
+        when(pharmaService.findByName(pharmaDTO.getName())).thenReturn(pharmaDTO);
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH + "/" + pharmaDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"7\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    void whenGETIsCalledWithCurrentETagForNotRegisteredNameThenNotFoundStatusIsReturned() throws Exception {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+
+        when(pharmaService.version(pharmaDTO.getName())).thenReturn(7L);
+        when(pharmaService.findByName(pharmaDTO.getName())).thenThrow(PharmaNotFoundException.class);
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH + "/" + pharmaDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"7\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenGETIsCalledWithStaleETagThenPharmaIsReturnedWithCurrentETag() throws Exception {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+
+        when(pharmaService.version(pharmaDTO.getName())).thenReturn(8L);
+        when(pharmaService.findByName(pharmaDTO.getName())).thenReturn(pharmaDTO);
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH + "/" + pharmaDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"7\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"8\""))
+                .andExpect(jsonPath("$.name", is(pharmaDTO.getName())));
+    }
+
+    @Test
+    void whenGETListIsCalledWithCurrentETagThenNotModifiedIsReturnedWithoutQuery() throws Exception {
+        when(pharmaService.catalogVersion()).thenReturn(42L);
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"42\""))
+                .andExpect(status().isNotModified());
+        verify(pharmaService, never()).listAll(any(PharmaFilterDTO.class), any(Pageable.class));
+    }
+
     @Test
     void whenGETListWithBeersIsCalledThenOkStatusIsReturned() throws Exception {
         PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
 
-        when(pharmaService.listAll()).thenReturn(Collections.singletonList(pharmaDTO));
+        when(pharmaService.listAll(any(PharmaFilterDTO.class), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(pharmaDTO)));
 
         mockMvc.perform(get(PHARMA_API_URL_PATH)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "1"))
                 .andExpect(jsonPath("$[0].name", is(pharmaDTO.getName())))
                 .andExpect(jsonPath("$[0].brand", is(pharmaDTO.getBrand())))
                 .andExpect(jsonPath("$[0].type", is(pharmaDTO.getType().toString())));
     }
 
+    @Test
+    void whenGETListIsCalledAcceptingSmileThenBinaryBodyWithOrdinalTypeIsReturned() throws Exception {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        MockMvc smileMockMvc = MockMvcBuilders.standaloneSetup(pharmaController)
+                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(),
+                        new WireFormatConfig().smileHttpMessageConverter(Jackson2ObjectMapperBuilder.json()))
+                .build();
+
+        when(pharmaService.listAll(any(PharmaFilterDTO.class), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(pharmaDTO)));
+
+        byte[] body = smileMockMvc.perform(get(PHARMA_API_URL_PATH)
+                .accept(WireFormatConfig.SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormatConfig.SMILE_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0-smile\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode pharmas = WireFormatConfig.smileObjectMapper(Jackson2ObjectMapperBuilder.json()).readTree(body);
+        assertThat(pharmas.get(0).get("name").asText(), is(pharmaDTO.getName()));
+        assertThat(pharmas.get(0).get("type").asInt(), is(pharmaDTO.getType().ordinal()));
+    }
+
     @Test
     void whenGETListWithoutBeersIsCalledThenOkStatusIsReturned() throws Exception {
-        when(pharmaService.listAll()).thenReturn(Collections.EMPTY_LIST);
+        when(pharmaService.listAll(any(PharmaFilterDTO.class), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.emptyList()));
 
         mockMvc.perform(get(PHARMA_API_URL_PATH)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void whenGETListIsCalledWithFiltersThenTheyArePassedToTheService() throws Exception {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        PharmaFilterDTO expectedFilter = PharmaFilterDTO.builder()
+                .type(PharmaType.EMS)
+                .brand(pharmaDTO.getBrand())
+                .lowStock(5)
+                .build();
+
+        when(pharmaService.listAll(eq(expectedFilter), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(pharmaDTO)));
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH)
+                .param("type", PharmaType.EMS.toString())
+                .param("brand", pharmaDTO.getBrand())
+                .param("lowStock", "5")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(pharmaDTO.getName())));
+    }
+
+    @Test
+    void whenGETListIsCalledWithAfterIdThenNextCursorIsReturned() throws Exception {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+
+        when(pharmaService.listAll(eq(PharmaFilterDTO.builder().afterId(0L).build()), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(pharmaDTO), PageRequest.of(0, 1), true));
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH)
+                .param("afterId", "0")
+                .param("size", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-After-Id", String.valueOf(pharmaDTO.getId())))
+                .andExpect(header().doesNotExist("X-Total-Count"));
+    }
+
+    @Test
+    void whenGETSearchIsCalledThenMatchingPharmasAreReturned() throws Exception {
+        PharmaSummaryDTO pharmaSummaryDTO = new PharmaSummaryDTO(VALID_PHARMA_ID, "Loratadina", "EMS", PharmaType.EMS);
+
+        when(pharmaNameIndex.search("lora", 5)).thenReturn(Collections.singletonList(pharmaSummaryDTO));
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_SEARCH_URL)
+                .param("prefix", "lora")
+                .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(pharmaSummaryDTO.getName())))
+                .andExpect(jsonPath("$[0].brand", is(pharmaSummaryDTO.getBrand())));
+    }
+
+    @Test
+    void whenGETLowStockIsCalledThenMostUrgentPharmasAreReturned() throws Exception {
+        LowStockDTO lowStockDTO = new LowStockDTO(VALID_PHARMA_ID, "Loratadina", "EMS", 2, 5, LowStockStatus.BELOW);
+
+        when(lowStockMonitor.lowStock(10, true)).thenReturn(Collections.singletonList(lowStockDTO));
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_LOW_STOCK_URL)
+                .param("limit", "10")
+                .param("includeNear", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(lowStockDTO.getName())))
+                .andExpect(jsonPath("$[0].status", is(LowStockStatus.BELOW.name())));
+    }
+
+    @Test
+    void whenGETAggregatesIsCalledByBrandThenTotalsWithUtilizationAreReturned() throws Exception {
+        StockAggregateDTO aggregateDTO = new StockAggregateDTO(null, "EMS", 2L, 30L, 100L);
+
+        when(stockAggregateService.aggregates(StockAggregateGrouping.BRAND)).thenReturn(Collections.singletonList(aggregateDTO));
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH + "/aggregates")
+                .param("groupBy", "BRAND"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].brand", is("EMS")))
+                .andExpect(jsonPath("$[0].quantity", is(30)))
+                .andExpect(jsonPath("$[0].utilization", is(0.3)));
+    }
+
+    @Test
+    void whenGETChangesIsCalledWithLastEventIdThenStreamResumesFromIt() throws Exception {
+        when(pharmaChangeStream.subscribe(42L)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_CHANGES_URL)
+                .header(PharmaController.LAST_EVENT_ID_HEADER, "42"))
+                .andExpect(status().isOk());
+
+        verify(pharmaChangeStream).subscribe(42L);
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementAtLocationThenLocationStockIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+        LocationStockDTO locationStockDTO = new LocationStockDTO(VALID_LOCATION, VALID_PHARMA_ID, 50, 10);
+
+        when(locationStockService.increment(VALID_PHARMA_ID, VALID_LOCATION, quantityDTO.getQuantity())).thenReturn(locationStockDTO);
+
+        mockMvc.perform(patch(PHARMA_API_URL_PATH + "/" + VALID_PHARMA_ID + PHARMA_API_SUBPATH_LOCATIONS_URL + VALID_LOCATION + PHARMA_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.location", is(VALID_LOCATION)))
+                .andExpect(jsonPath("$.quantity", is(10)));
+    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementAtLocationWithoutStockThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        when(locationStockService.decrement(VALID_PHARMA_ID, VALID_LOCATION, quantityDTO.getQuantity())).thenThrow(PharmaStockExceededException.class);
+
+        mockMvc.perform(patch(PHARMA_API_URL_PATH + "/" + VALID_PHARMA_ID + PHARMA_API_SUBPATH_LOCATIONS_URL + VALID_LOCATION + PHARMA_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPOSTIsCalledToReserveThenCreatedStatusIsReturned() throws Exception {
+        ReservationRequestDTO reservationRequestDTO = ReservationRequestDTO.builder()
+                .quantity(3)
+                .build();
+        ReservationDTO reservationDTO = new ReservationDTO(RESERVATION_ID, VALID_PHARMA_ID, 3, Instant.now(), 7);
+
+        when(reservationService.reserve(VALID_PHARMA_ID, 3, null)).thenReturn(reservationDTO);
+
+        mockMvc.perform(post(PHARMA_API_URL_PATH + "/" + VALID_PHARMA_ID + PHARMA_API_SUBPATH_RESERVATIONS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(reservationRequestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(RESERVATION_ID)))
+                .andExpect(jsonPath("$.available", is(7)));
+    }
+
+    @Test
+    void whenPOSTIsCalledToCommitExpiredReservationThenNotFoundStatusIsReturned() throws Exception {
+        when(reservationService.commit(RESERVATION_ID)).thenThrow(ReservationNotFoundException.class);
+
+        mockMvc.perform(post(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_RESERVATIONS_URL + "/" + RESERVATION_ID + ":commit"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenDELETEIsCalledToReleaseReservationThenNoContentStatusIsReturned() throws Exception {
+        mockMvc.perform(delete(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_RESERVATIONS_URL + "/" + RESERVATION_ID))
+                .andExpect(status().isNoContent());
+
+        verify(reservationService).release(RESERVATION_ID);
+    }
+
     @Test
     void whenDELETEIsCalledWithValidIdThenNoContentStatusIsReturned() throws Exception {
         doNothing().when(pharmaService).deleteById(VALID_PHARMA_ID);
@@ -244,4 +563,88 @@ public class PharmaControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void whenPATCHIsCalledWithStockBatchThenEachAdjustmentStatusIsReturned() throws Exception {
+        StockBatchDTO stockBatchDTO = StockBatchDTO.builder()
+                .adjustments(Arrays.asList(
+                        StockAdjustmentDTO.builder().id(VALID_PHARMA_ID).delta(10).build(),
+                        StockAdjustmentDTO.builder().id(INVALID_PHARMA_ID).delta(5).build()))
+                .build();
+
+        when(stockBatchService.adjust(stockBatchDTO.getAdjustments())).thenReturn(Arrays.asList(
+                StockAdjustmentResultDTO.builder().id(VALID_PHARMA_ID).delta(10).status(StockAdjustmentStatus.APPLIED).quantity(20).build(),
+                StockAdjustmentResultDTO.builder().id(INVALID_PHARMA_ID).delta(5).status(StockAdjustmentStatus.NOT_FOUND).build()));
+
+        mockMvc.perform(patch(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_STOCK_BATCH_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(stockBatchDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(StockAdjustmentStatus.APPLIED.toString())))
+                .andExpect(jsonPath("$[0].quantity", is(20)))
+                .andExpect(jsonPath("$[1].status", is(StockAdjustmentStatus.NOT_FOUND.toString())));
+    }
+
+    @Test
+    void whenPATCHIsCalledWithEmptyStockBatchThenBadRequestStatusIsReturned() throws Exception {
+        StockBatchDTO stockBatchDTO = StockBatchDTO.builder()
+                .adjustments(Collections.emptyList())
+                .build();
+
+        mockMvc.perform(patch(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_STOCK_BATCH_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(stockBatchDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPOSTIsCalledWithCsvCatalogThenImportReportIsReturned() throws Exception {
+        ImportReportDTO importReportDTO = ImportReportDTO.builder()
+                .processed(2)
+                .imported(2)
+                .build();
+
+        when(pharmaImportService.importCatalog(any(), eq(PharmaImportFormat.CSV))).thenReturn(importReportDTO);
+
+        mockMvc.perform(post(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_IMPORT_URL)
+                .contentType("text/csv")
+                .content("name,brand,max,quantity,type\nLoratadina,EMS,50,10,EMS\nDipirona,EMS,50,10,EMS\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.processed", is(2)))
+                .andExpect(jsonPath("$.imported", is(2)));
+    }
+
+    @Test
+    void whenGETExportIsCalledThenCatalogIsStreamedAsNdjson() throws Exception {
+        mockMvc.perform(get(PHARMA_API_URL_PATH + PHARMA_API_SUBPATH_EXPORT_URL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"));
+
+        verify(pharmaExportService, times(1)).exportCatalog(any());
+    }
+
+    @Test
+    void whenGETMovementsIsCalledThenLedgerEntriesAreReturned() throws Exception {
+        StockMovementDTO stockMovementDTO = new StockMovementDTO(1L, VALID_PHARMA_ID, 5, 15,
+                PharmaChangeType.ADJUSTED, StockMovementSource.API, Instant.now());
+
+        when(stockMovementService.history(eq(VALID_PHARMA_ID), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(stockMovementDTO)));
+
+        mockMvc.perform(get(PHARMA_API_URL_PATH + "/" + VALID_PHARMA_ID + PHARMA_API_SUBPATH_MOVEMENTS_URL))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].delta", is(5)))
+                .andExpect(jsonPath("$[0].quantity", is(15)))
+                .andExpect(jsonPath("$[0].source", is(StockMovementSource.API.toString())));
+    }
+
+    @Test
+    void whenPOSTReplayIsCalledThenRebuiltPharmaIsReturned() throws Exception {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().quantity(12).build().toPharmaDTO();
+
+        when(stockMovementService.replay(VALID_PHARMA_ID)).thenReturn(pharmaDTO);
+
+        mockMvc.perform(post(PHARMA_API_URL_PATH + "/" + VALID_PHARMA_ID + PHARMA_API_SUBPATH_REPLAY_URL))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(12)));
+    }
 }
@@ -0,0 +1,69 @@
+package br.com.rrstecnologia.pharmastock.controller;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.config.ReadRouting;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReadYourWritesFilterTest {
+
+    private static final String PHARMA_API_URL_PATH = "/api/v1/pharmas";
+
+    private ReadYourWritesFilter readYourWritesFilter;
+    private AtomicBoolean primaryRequired;
+    private FilterChain routingChain;
+
+    @BeforeEach
+    void setUp() {
+        PharmastockProperties properties = new PharmastockProperties();
+        properties.getReplica().setEnabled(true);
+        readYourWritesFilter = new ReadYourWritesFilter(properties);
+        primaryRequired = new AtomicBoolean();
+        routingChain = (request, response) -> primaryRequired.set(ReadRouting.isPrimaryRequired());
+    }
+
+    @Test
+    void whenClientWritesThenItsNextReadsGoToThePrimary() throws Exception {
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        readYourWritesFilter.doFilter(new MockHttpServletRequest("PATCH", PHARMA_API_URL_PATH + "/1/decrement"), writeResponse, routingChain);
+        Cookie primaryUntil = writeResponse.getCookie(ReadYourWritesFilter.PRIMARY_UNTIL_COOKIE);
+        assertThat(primaryUntil, is(notNullValue()));
+
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", PHARMA_API_URL_PATH);
+        read.setCookies(primaryUntil);
+        readYourWritesFilter.doFilter(read, new MockHttpServletResponse(), routingChain);
+
+        assertThat(primaryRequired.get(), is(true));
+        assertThat(ReadRouting.isPrimaryRequired(), is(false));
+    }
+
+    @Test
+    void whenClientOnlyReadsThenReplicaIsAllowedAndNoCookieIsSet() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        readYourWritesFilter.doFilter(new MockHttpServletRequest("GET", PHARMA_API_URL_PATH), response, routingChain);
+
+        assertThat(primaryRequired.get(), is(false));
+        assertThat(response.getCookie(ReadYourWritesFilter.PRIMARY_UNTIL_COOKIE), is(nullValue()));
+    }
+
+    @Test
+    void whenWriteWindowHasPassedThenReplicaIsAllowedAgain() throws Exception {
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", PHARMA_API_URL_PATH);
+        read.setCookies(new Cookie(ReadYourWritesFilter.PRIMARY_UNTIL_COOKIE, String.valueOf(System.currentTimeMillis() - 1)));
+
+        readYourWritesFilter.doFilter(read, new MockHttpServletResponse(), routingChain);
+
+        assertThat(primaryRequired.get(), is(false));
+    }
+}
@@ -0,0 +1,73 @@
+package br.com.rrstecnologia.pharmastock.metrics;
+
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PharmaMetricsAspectTest {
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+    @Mock
+    private Signature signature;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PharmaMetricsAspect pharmaMetricsAspect;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pharmaMetricsAspect = new PharmaMetricsAspect(meterRegistry);
+        when(joinPoint.getSignature()).thenReturn(signature);
+    }
+
+    @Test
+    void whenServiceOperationSucceedsThenItIsTimed() throws Throwable {
+        when(signature.getName()).thenReturn("findByName");
+        when(joinPoint.proceed()).thenReturn("result");
+
+        assertThat(pharmaMetricsAspect.timeService(joinPoint), is(equalTo("result")));
+
+        assertThat(meterRegistry.get(PharmaMetricsAspect.SERVICE_TIMER)
+                .tag("method", "findByName").tag("exception", "none").timer().count(), is(equalTo(1L)));
+        assertThat(meterRegistry.find(PharmaMetricsAspect.EXCEPTION_COUNTER).counter(), is(nullValue()));
+    }
+
+    @Test
+    void whenServiceOperationFailsThenExceptionIsCounted() throws Throwable {
+        when(signature.getName()).thenReturn("findByName");
+        when(joinPoint.proceed()).thenThrow(new PharmaNotFoundException("Dipirona"));
+
+        assertThrows(PharmaNotFoundException.class, () -> pharmaMetricsAspect.timeService(joinPoint));
+
+        assertThat(meterRegistry.get(PharmaMetricsAspect.SERVICE_TIMER)
+                .tag("exception", "PharmaNotFoundException").timer().count(), is(equalTo(1L)));
+        assertThat(meterRegistry.get(PharmaMetricsAspect.EXCEPTION_COUNTER)
+                .tag("method", "findByName").tag("exception", "PharmaNotFoundException").counter().count(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenRepositoryIsCalledThenItIsTimed() throws Throwable {
+        when(signature.getName()).thenReturn("adjustQuantity");
+        when(joinPoint.proceed()).thenReturn(1);
+
+        pharmaMetricsAspect.timeRepository(joinPoint);
+
+        assertThat(meterRegistry.get(PharmaMetricsAspect.REPOSITORY_TIMER)
+                .tag("method", "adjustQuantity").timer().count(), is(equalTo(1L)));
+    }
+}
@@ -0,0 +1,58 @@
+package br.com.rrstecnologia.pharmastock.metrics;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class StockLevelMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private StockLevelMetrics stockLevelMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stockLevelMetrics = new StockLevelMetrics(meterRegistry);
+        stockLevelMetrics.onCatalogLoaded(new CatalogLoadedEvent(Arrays.asList(
+                PharmaDTOBuilder.builder().id(1L).quantity(20).build().toPharmaDTO(),
+                PharmaDTOBuilder.builder().id(2L).name("Dipirona").quantity(10).build().toPharmaDTO())));
+    }
+
+    @Test
+    void whenCatalogIsLoadedThenGaugesReflectItsTotals() {
+        assertThat(gauge(StockLevelMetrics.QUANTITY_GAUGE, PharmaType.EMS), is(equalTo(30.0)));
+        assertThat(gauge(StockLevelMetrics.ITEMS_GAUGE, PharmaType.EMS), is(equalTo(2.0)));
+        assertThat(gauge(StockLevelMetrics.QUANTITY_GAUGE, PharmaType.ACHE), is(equalTo(0.0)));
+    }
+
+    @Test
+    void whenPharmaChangesThenGaugesFollowTheEvents() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().quantity(10).build().toPharmaDTO();
+
+        stockLevelMetrics.onPharmaChanged(PharmaChangedEvent.created(pharmaDTO, StockMovementSource.API));
+        stockLevelMetrics.onPharmaChanged(PharmaChangedEvent.adjusted(pharmaDTO, -4, StockMovementSource.API));
+        assertThat(gauge(StockLevelMetrics.QUANTITY_GAUGE, PharmaType.EMS), is(equalTo(36.0)));
+        assertThat(gauge(StockLevelMetrics.ITEMS_GAUGE, PharmaType.EMS), is(equalTo(3.0)));
+
+        pharmaDTO.setQuantity(6);
+        stockLevelMetrics.onPharmaChanged(PharmaChangedEvent.deleted(pharmaDTO, StockMovementSource.API));
+        assertThat(gauge(StockLevelMetrics.QUANTITY_GAUGE, PharmaType.EMS), is(equalTo(30.0)));
+        assertThat(gauge(StockLevelMetrics.ITEMS_GAUGE, PharmaType.EMS), is(equalTo(2.0)));
+    }
+
+    private double gauge(String name, PharmaType type) {
+        return meterRegistry.get(name).tag("type", type.name()).gauge().value();
+    }
+}
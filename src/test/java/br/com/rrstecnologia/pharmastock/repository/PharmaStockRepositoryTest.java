@@ -0,0 +1,44 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.entity.PharmaStock;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class PharmaStockRepositoryTest {
+
+    @Autowired
+    private PharmaRepository pharmaRepository;
+    @Autowired
+    private PharmaStockRepository pharmaStockRepository;
+
+    @Test
+    void whenLocationIsOpenedForMissingPharmaThenItIsRejected() {
+        assertThrows(DataIntegrityViolationException.class,
+                () -> pharmaStockRepository.saveAndFlush(new PharmaStock("loja-01", Long.MAX_VALUE, 50, 0)));
+    }
+
+    @Test
+    void whenPharmaIsDeletedThenItsLocationsAreDeleted() {
+        Pharma pharma = pharmaRepository.save(new Pharma(null, "Loratadina " + UUID.randomUUID(), "EMS", 50, 10, PharmaType.EMS, 0));
+        pharmaStockRepository.saveAndFlush(new PharmaStock("loja-01", pharma.getId(), 50, 5));
+        pharmaStockRepository.saveAndFlush(new PharmaStock("loja-02", pharma.getId(), 50, 3));
+        assertThat(pharmaStockRepository.findByPharmaIdOrderByLocation(pharma.getId()), hasSize(2));
+
+        pharmaRepository.deleteById(pharma.getId());
+
+        assertThat(pharmaStockRepository.findByPharmaIdOrderByLocation(pharma.getId()), is(empty()));
+    }
+}
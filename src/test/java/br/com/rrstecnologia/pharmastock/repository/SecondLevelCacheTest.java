@@ -0,0 +1,133 @@
+package br.com.rrstecnologia.pharmastock.repository;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.config.ReplicaReads;
+import br.com.rrstecnologia.pharmastock.config.SecondLevelCacheConfig;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest
+public class SecondLevelCacheTest {
+
+    @Autowired
+    private PharmaRepository pharmaRepository;
+    @Autowired
+    private PharmaStockBatchRepository pharmaStockBatchRepository;
+    @Autowired
+    private PharmaCacheEvictor pharmaCacheEvictor;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTransactionTemplate;
+    private Cache cache;
+    private Statistics statistics;
+    private Pharma pharma;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+        cache = entityManagerFactory.getCache();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        pharma = pharmaRepository.save(new Pharma(null, "Loratadina " + UUID.randomUUID(), "EMS", 50, 10, PharmaType.EMS, 0));
+        cache.evictAll();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pharmaRepository.deleteById(pharma.getId());
+    }
+
+    @Test
+    void whenPharmaIsReadAgainThenItComesFromTheSecondLevelCache() {
+        pharmaRepository.findById(pharma.getId());
+        pharmaRepository.findById(pharma.getId());
+
+        CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(SecondLevelCacheConfig.PHARMA_REGION);
+        assertThat(regionStatistics.getMissCount(), is(equalTo(1L)));
+        assertThat(regionStatistics.getHitCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    void whenQuantityIsAdjustedThenOnlyItsCachedRowIsEvicted() {
+        Pharma other = pharmaRepository.save(new Pharma(null, "Cetirizina " + UUID.randomUUID(), "EMS", 50, 10, PharmaType.EMS, 0));
+        pharmaRepository.findById(pharma.getId());
+        pharmaRepository.findById(other.getId());
+
+        Integer updated = transactionTemplate.execute(status -> pharmaStockBatchRepository.adjustQuantity(pharma.getId(), 1, 0));
+
+        assertThat(updated, is(equalTo(1)));
+        assertThat(cache.contains(Pharma.class, pharma.getId()), is(false));
+        assertThat(cache.contains(Pharma.class, other.getId()), is(true));
+        assertThat(pharmaRepository.findById(pharma.getId()).get().getQuantity(), is(equalTo(11)));
+        pharmaRepository.deleteById(other.getId());
+    }
+
+    @Test
+    void whenAdjustmentWouldGoUnderTheFloorThenNothingIsUpdated() {
+        Integer updated = transactionTemplate.execute(status -> pharmaStockBatchRepository.adjustQuantity(pharma.getId(), -5, 6));
+
+        assertThat(updated, is(equalTo(0)));
+        assertThat(pharmaRepository.findById(pharma.getId()).get().getQuantity(), is(equalTo(10)));
+    }
+
+    @Test
+    void whenJdbcWriterEvictsPharmaThenRowsLoadedBeforeItCommitsAreNotKept() {
+        pharmaRepository.findById(pharma.getId());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            pharmaCacheEvictor.evictPharmas(Collections.singleton(pharma.getId()));
+            assertThat(cache.contains(Pharma.class, pharma.getId()), is(false));
+            pharmaRepository.findById(pharma.getId());
+        });
+
+        assertThat(cache.contains(Pharma.class, pharma.getId()), is(false));
+    }
+
+    @Test
+    void whenReadMayRunOnTheReplicaThenLoadedRowIsNotCached() {
+        PharmastockProperties properties = new PharmastockProperties();
+        properties.getReplica().setEnabled(true);
+        ReplicaReads replicaReads = new ReplicaReads(entityManager, properties);
+
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            replicaReads.allow(0L);
+            pharmaRepository.findByName(pharma.getName());
+        });
+
+        assertThat(cache.contains(Pharma.class, pharma.getId()), is(false));
+        assertThat(statistics.getQueryCachePutCount(), is(equalTo(0L)));
+
+        readOnlyTransactionTemplate.executeWithoutResult(status -> pharmaRepository.findByName(pharma.getName()));
+
+        assertThat(cache.contains(Pharma.class, pharma.getId()), is(true));
+        assertThat(statistics.getQueryCachePutCount(), is(equalTo(1L)));
+    }
+}
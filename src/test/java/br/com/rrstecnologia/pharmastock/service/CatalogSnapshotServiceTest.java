@@ -0,0 +1,134 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaCatalogRepository;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementBatchRepository;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CatalogSnapshotServiceTest {
+
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    @Mock
+    private PharmaCatalogRepository pharmaCatalogRepository;
+    @Mock
+    private PharmaRepository pharmaRepository;
+    @Mock
+    private StockMovementRepository stockMovementRepository;
+    @Mock
+    private StockMovementBatchRepository stockMovementBatchRepository;
+    @Mock
+    private StockDeltaAggregator stockDeltaAggregator;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<CatalogLoadedEvent> eventCaptor;
+    @Captor
+    private ArgumentCaptor<List<StockMovement>> movementsCaptor;
+
+    @TempDir
+    Path directory;
+
+    private CatalogSnapshotService catalogSnapshotService;
+    private PharmaDTO loratadina;
+    private PharmaDTO dipirona;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        PharmastockProperties properties = new PharmastockProperties();
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setDirectory(directory.toString());
+        catalogSnapshotService = new CatalogSnapshotService(pharmaCatalogRepository, pharmaRepository, stockMovementRepository,
+                stockMovementBatchRepository, stockDeltaAggregator, eventPublisher, transactionManager, properties);
+
+        loratadina = PharmaDTOBuilder.builder().id(1L).quantity(10).build().toPharmaDTO();
+        dipirona = PharmaDTOBuilder.builder().id(2L).name("Dipirona").quantity(20).build().toPharmaDTO();
+        when(pharmaCatalogRepository.findAll()).thenReturn(Arrays.asList(loratadina, dipirona));
+        when(stockMovementRepository.findLastId()).thenReturn(41L);
+        catalogSnapshotService.takeSnapshot();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        catalogSnapshotService.stop();
+    }
+
+    @Test
+    void whenDatabaseIsEmptyThenSnapshotIsRestored() throws IOException {
+        when(pharmaCatalogRepository.isEmpty()).thenReturn(true);
+
+        catalogSnapshotService.start();
+
+        verify(pharmaCatalogRepository).insertAll(Arrays.asList(loratadina, dipirona));
+        verify(pharmaCatalogRepository).restartSequenceAfter(2L, 50);
+        verify(stockMovementBatchRepository).insertAll(movementsCaptor.capture());
+        assertThat(movementsCaptor.getValue().get(1).getDelta(), is(equalTo(20)));
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getPharmas(), contains(loratadina, dipirona));
+    }
+
+    @Test
+    void whenDatabaseHasRowsThenOnlyPharmasChangedSinceTheSnapshotAreReloaded() throws IOException {
+        PharmaDTO adjustedDipirona = PharmaDTOBuilder.builder().id(2L).name("Dipirona").quantity(5).build().toPharmaDTO();
+        when(pharmaCatalogRepository.isEmpty()).thenReturn(false);
+        when(stockMovementRepository.findPharmaIdsChangedAfter(41L)).thenReturn(Collections.singletonList(2L));
+        when(pharmaRepository.findAllById(Collections.singletonList(2L)))
+                .thenReturn(Collections.singletonList(pharmaMapper.toModel(adjustedDipirona)));
+
+        catalogSnapshotService.start();
+
+        verify(pharmaCatalogRepository, never()).insertAll(any());
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getPharmas(), contains(loratadina, adjustedDipirona));
+    }
+
+    @Test
+    void whenQuantityIsReplayedThenSnapshotIsDiscarded() throws IOException {
+        PharmaDTO replayedDipirona = PharmaDTOBuilder.builder().id(2L).name("Dipirona").quantity(7).build().toPharmaDTO();
+
+        catalogSnapshotService.onPharmaChanged(PharmaChangedEvent.adjusted(replayedDipirona, -13, StockMovementSource.REPLAY));
+        catalogSnapshotService.start();
+
+        verify(stockMovementRepository, never()).findPharmaIdsChangedAfter(anyLong());
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getPharmas(), contains(loratadina, dipirona));
+    }
+}
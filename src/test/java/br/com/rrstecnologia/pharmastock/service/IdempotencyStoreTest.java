@@ -0,0 +1,149 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.entity.IdempotencyRecord;
+import br.com.rrstecnologia.pharmastock.enums.IdempotencyClaimStatus;
+import br.com.rrstecnologia.pharmastock.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyStoreTest {
+
+    private static final String KEY = "checkout-42";
+    private static final String FINGERPRINT = "PATCH /api/v1/pharmas/1/decrement 9a1f";
+    private static final IdempotencyStore.StoredResponse RESPONSE =
+            new IdempotencyStore.StoredResponse(201, "application/json", Collections.singletonMap("Location", "/api/v1/pharmas/1"),
+                    "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+    private static final String ENCODED_HEADERS = "Location: /api/v1/pharmas/1\n";
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private PharmastockProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PharmastockProperties();
+        properties.getIdempotency().setInFlightWait(Duration.ofMillis(50));
+    }
+
+    @Test
+    void whenKeyIsRetriedAfterSuccessThenStoredResponseIsReplayed() throws InterruptedException {
+        IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, properties);
+
+        IdempotencyStore.Claim claim = idempotencyStore.claim(KEY, FINGERPRINT);
+        assertThat(claim.getStatus(), is(equalTo(IdempotencyClaimStatus.OWNER)));
+        idempotencyStore.complete(claim, RESPONSE);
+
+        IdempotencyStore.Claim retry = idempotencyStore.claim(KEY, FINGERPRINT);
+        assertThat(retry.getStatus(), is(equalTo(IdempotencyClaimStatus.REPLAY)));
+        assertThat(retry.getResponse(), is(RESPONSE));
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    @Test
+    void whenKeyIsReusedForAnotherRequestThenConflictIsReturned() throws InterruptedException {
+        IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, properties);
+
+        idempotencyStore.complete(idempotencyStore.claim(KEY, FINGERPRINT), RESPONSE);
+
+        assertThat(idempotencyStore.claim(KEY, "PATCH /api/v1/pharmas/2/decrement 9a1f").getStatus(),
+                is(equalTo(IdempotencyClaimStatus.CONFLICT)));
+    }
+
+    @Test
+    void whenOwnerIsStillRunningThenRetryIsInProgress() throws InterruptedException {
+        IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, properties);
+
+        idempotencyStore.claim(KEY, FINGERPRINT);
+
+        assertThat(idempotencyStore.claim(KEY, FINGERPRINT).getStatus(), is(equalTo(IdempotencyClaimStatus.IN_PROGRESS)));
+    }
+
+    @Test
+    void whenOwnerFailsThenKeyCanBeClaimedAgain() throws InterruptedException {
+        IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, properties);
+
+        idempotencyStore.abandon(idempotencyStore.claim(KEY, FINGERPRINT));
+
+        assertThat(idempotencyStore.claim(KEY, FINGERPRINT).getStatus(), is(equalTo(IdempotencyClaimStatus.OWNER)));
+    }
+
+    @Test
+    void whenAnotherNodeStoredTheResponseThenItIsReplayedFromTheDatabase() throws InterruptedException {
+        properties.getIdempotency().setPersistent(true);
+        IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, properties);
+        IdempotencyRecord record = new IdempotencyRecord(KEY, FINGERPRINT, RESPONSE.getStatus(), RESPONSE.getContentType(),
+                ENCODED_HEADERS, RESPONSE.getBody(), Instant.now(), Instant.now().plusSeconds(30));
+
+        when(idempotencyRecordRepository.insertPending(eq(KEY), eq(FINGERPRINT), any(Instant.class), any(Instant.class))).thenReturn(false);
+        when(idempotencyRecordRepository.findByKey(KEY)).thenReturn(Optional.of(record));
+
+        IdempotencyStore.Claim claim = idempotencyStore.claim(KEY, FINGERPRINT);
+
+        assertThat(claim.getStatus(), is(equalTo(IdempotencyClaimStatus.REPLAY)));
+        assertThat(claim.getResponse().getBody(), is(RESPONSE.getBody()));
+        assertThat(claim.getResponse().getHeaders(), is(equalTo(RESPONSE.getHeaders())));
+    }
+
+    @Test
+    void whenPersistentClaimSucceedsThenResponseIsStoredInTheDatabase() throws InterruptedException {
+        properties.getIdempotency().setPersistent(true);
+        IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, properties);
+
+        when(idempotencyRecordRepository.insertPending(eq(KEY), eq(FINGERPRINT), any(Instant.class), any(Instant.class))).thenReturn(true);
+
+        IdempotencyStore.Claim claim = idempotencyStore.claim(KEY, FINGERPRINT);
+        idempotencyStore.complete(claim, RESPONSE);
+
+        verify(idempotencyRecordRepository).complete(KEY, RESPONSE.getStatus(), RESPONSE.getContentType(), ENCODED_HEADERS, RESPONSE.getBody());
+    }
+
+    @Test
+    void whenClaimOfACrashedNodeExpiredThenItIsTakenOver() throws InterruptedException {
+        properties.getIdempotency().setPersistent(true);
+        IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, properties);
+        IdempotencyRecord record = new IdempotencyRecord(KEY, FINGERPRINT, null, null, null, null,
+                Instant.now().minusSeconds(60), Instant.now().minusSeconds(30));
+
+        when(idempotencyRecordRepository.insertPending(eq(KEY), eq(FINGERPRINT), any(Instant.class), any(Instant.class))).thenReturn(false);
+        when(idempotencyRecordRepository.findByKey(KEY)).thenReturn(Optional.of(record));
+        when(idempotencyRecordRepository.takeOverExpired(eq(KEY), eq(FINGERPRINT), any(Instant.class), any(Instant.class))).thenReturn(true);
+
+        assertThat(idempotencyStore.claim(KEY, FINGERPRINT).getStatus(), is(equalTo(IdempotencyClaimStatus.OWNER)));
+    }
+
+    @Test
+    void whenClaimOfAnotherNodeIsStillLeasedThenRetryIsInProgress() throws InterruptedException {
+        properties.getIdempotency().setPersistent(true);
+        IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, properties);
+        IdempotencyRecord record = new IdempotencyRecord(KEY, FINGERPRINT, null, null, null, null,
+                Instant.now(), Instant.now().plusSeconds(30));
+
+        when(idempotencyRecordRepository.insertPending(eq(KEY), eq(FINGERPRINT), any(Instant.class), any(Instant.class))).thenReturn(false);
+        when(idempotencyRecordRepository.findByKey(KEY)).thenReturn(Optional.of(record));
+
+        assertThat(idempotencyStore.claim(KEY, FINGERPRINT).getStatus(), is(equalTo(IdempotencyClaimStatus.IN_PROGRESS)));
+        verify(idempotencyRecordRepository, never()).takeOverExpired(any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.dto.LocationStockDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.entity.PharmaStock;
+import br.com.rrstecnologia.pharmastock.exception.InvalidLocationException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.PharmaStockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class LocationStockServiceTest {
+
+    private static final Long PHARMA_ID = 1L;
+    private static final String LOCATION = "loja-01";
+
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+    private final PharmaStock.Key key = new PharmaStock.Key(LOCATION, PHARMA_ID);
+
+    @Mock
+    private PharmaStockRepository pharmaStockRepository;
+    @Mock
+    private PharmaRepository pharmaRepository;
+    @Captor
+    private ArgumentCaptor<PharmaStock> pharmaStockCaptor;
+
+    private LocationStockService locationStockService;
+
+    @BeforeEach
+    void setUp() {
+        locationStockService = new LocationStockService(pharmaStockRepository, pharmaRepository);
+    }
+
+    @Test
+    void whenIncrementIsCalledOnOpenLocationThenOnlyItsRowIsUpdated() throws Exception {
+        when(pharmaStockRepository.adjustQuantity(LOCATION, PHARMA_ID, 5)).thenReturn(1);
+        when(pharmaStockRepository.findById(key)).thenReturn(Optional.of(new PharmaStock(LOCATION, PHARMA_ID, 50, 15)));
+
+        LocationStockDTO locationStockDTO = locationStockService.increment(PHARMA_ID, LOCATION, 5);
+
+        assertThat(locationStockDTO.getQuantity(), is(equalTo(15)));
+        verify(pharmaRepository, never()).findByIdForUpdate(any());
+    }
+
+    @Test
+    void whenIncrementIsCalledOnNewLocationThenLocationIsOpenedWithCatalogMax() throws Exception {
+        Pharma pharma = pharmaMapper.toModel(PharmaDTOBuilder.builder().max(40).build().toPharmaDTO());
+
+        when(pharmaStockRepository.adjustQuantity(LOCATION, PHARMA_ID, 5)).thenReturn(0, 1);
+        when(pharmaStockRepository.existsById(key)).thenReturn(false);
+        when(pharmaRepository.findByIdForUpdate(PHARMA_ID)).thenReturn(Optional.of(pharma));
+        when(pharmaStockRepository.findById(key)).thenReturn(Optional.of(new PharmaStock(LOCATION, PHARMA_ID, 40, 5)));
+
+        LocationStockDTO locationStockDTO = locationStockService.increment(PHARMA_ID, LOCATION, 5);
+
+        verify(pharmaStockRepository).saveAndFlush(pharmaStockCaptor.capture());
+        assertThat(pharmaStockCaptor.getValue().getMax(), is(equalTo(40)));
+        assertThat(pharmaStockCaptor.getValue().getQuantity(), is(equalTo(0)));
+        assertThat(locationStockDTO.getQuantity(), is(equalTo(5)));
+    }
+
+    @Test
+    void whenLocationIsOpenedWhileWaitingForThePharmaLockThenItIsNotOpenedAgain() throws Exception {
+        Pharma pharma = pharmaMapper.toModel(PharmaDTOBuilder.builder().max(40).build().toPharmaDTO());
+
+        when(pharmaStockRepository.adjustQuantity(LOCATION, PHARMA_ID, 5)).thenReturn(0, 1);
+        when(pharmaStockRepository.existsById(key)).thenReturn(false, true);
+        when(pharmaRepository.findByIdForUpdate(PHARMA_ID)).thenReturn(Optional.of(pharma));
+        when(pharmaStockRepository.findById(key)).thenReturn(Optional.of(new PharmaStock(LOCATION, PHARMA_ID, 40, 10)));
+
+        LocationStockDTO locationStockDTO = locationStockService.increment(PHARMA_ID, LOCATION, 5);
+
+        verify(pharmaStockRepository, never()).saveAndFlush(any());
+        assertThat(locationStockDTO.getQuantity(), is(equalTo(10)));
+    }
+
+    @Test
+    void whenDecrementIsCalledOnNewLocationThenAnExceptionShouldBeThrown() {
+        when(pharmaStockRepository.adjustQuantity(LOCATION, PHARMA_ID, -5)).thenReturn(0);
+        when(pharmaStockRepository.existsById(key)).thenReturn(false);
+        when(pharmaRepository.existsById(PHARMA_ID)).thenReturn(true);
+
+        assertThrows(PharmaStockExceededException.class, () -> locationStockService.decrement(PHARMA_ID, LOCATION, 5));
+        verify(pharmaStockRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void whenIncrementIsCalledWithInvalidPharmaThenAnExceptionShouldBeThrown() {
+        when(pharmaStockRepository.adjustQuantity(LOCATION, PHARMA_ID, 5)).thenReturn(0);
+        when(pharmaStockRepository.existsById(key)).thenReturn(false);
+        when(pharmaRepository.findByIdForUpdate(PHARMA_ID)).thenReturn(Optional.empty());
+
+        assertThrows(PharmaNotFoundException.class, () -> locationStockService.increment(PHARMA_ID, LOCATION, 5));
+        verify(pharmaStockRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void whenIncrementIsCalledWithInvalidLocationThenAnExceptionShouldBeThrown() {
+        assertThrows(InvalidLocationException.class, () -> locationStockService.increment(PHARMA_ID, "Loja 01", 5));
+    }
+}
@@ -0,0 +1,138 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.LowStockDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.LowStockStatus;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class LowStockMonitorTest {
+
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    private LowStockMonitor lowStockMonitor;
+
+    @BeforeEach
+    void setUp() {
+        lowStockMonitor = new LowStockMonitor(new PharmastockProperties());
+        lowStockMonitor.onCatalogLoaded(new CatalogLoadedEvent(Arrays.asList(
+                pharma(1L, 20, 10),
+                pharma(2L, 3, 10),
+                pharma(3L, 12, 10),
+                pharma(4L, 0, 0))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        lowStockMonitor.stop();
+    }
+
+    @Test
+    void whenCatalogIsLoadedThenOnlyPharmasAtOrBelowReorderPointAreListed() {
+        assertThat(ids(lowStockMonitor.lowStock(10, false)), contains(2L));
+    }
+
+    @Test
+    void whenNearPharmasAreIncludedThenTheyFollowTheMostUrgent() {
+        List<LowStockDTO> lowStock = lowStockMonitor.lowStock(10, true);
+
+        assertThat(ids(lowStock), contains(2L, 3L));
+        assertThat(lowStock.get(1).getStatus(), is(LowStockStatus.NEAR));
+        assertThat(ids(lowStockMonitor.lowStock(1, true)), contains(2L));
+    }
+
+    @Test
+    void whenQuantityChangesThenRankingIsUpdated() {
+        lowStockMonitor.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 8, 10), -12, StockMovementSource.API));
+        lowStockMonitor.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(2L, 30, 10), 27, StockMovementSource.API));
+
+        assertThat(ids(lowStockMonitor.lowStock(10, true)), contains(1L, 3L));
+    }
+
+    @Test
+    void whenPharmaIsDeletedThenItLeavesTheRanking() {
+        lowStockMonitor.onPharmaChanged(PharmaChangedEvent.deleted(pharma(2L, 3, 10), StockMovementSource.API));
+
+        assertThat(lowStockMonitor.lowStock(10, false), is(empty()));
+    }
+
+    @Test
+    void whenStatusChangesThenTheEntryIsPushedToSubscribers() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        lowStockMonitor.subscribe(emitter);
+
+        lowStockMonitor.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 8, 10), -12, StockMovementSource.API));
+
+        ArgumentCaptor<SseEmitter.SseEventBuilder> eventCaptor = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, timeout(TIMEOUT_MILLIS)).send(eventCaptor.capture());
+        List<Object> sent = eventCaptor.getValue().build().stream()
+                .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                .collect(Collectors.toList());
+        LowStockDTO entry = (LowStockDTO) sent.stream().filter(LowStockDTO.class::isInstance).findFirst().get();
+        assertThat(sent.get(0), is("event:" + LowStockMonitor.STREAM_EVENT_NAME + "\ndata:"));
+        assertThat(entry.getId(), is(1L));
+        assertThat(entry.getStatus(), is(LowStockStatus.BELOW));
+    }
+
+    @Test
+    void whenStatusIsUnchangedThenNothingIsPushed() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        lowStockMonitor.subscribe(emitter);
+
+        lowStockMonitor.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(2L, 2, 10), -1, StockMovementSource.API));
+
+        verify(emitter, after(200).never()).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    void whenSendingFailsThenTheSubscriberIsDropped() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        doThrow(new IOException("broken pipe")).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        lowStockMonitor.subscribe(emitter);
+
+        lowStockMonitor.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 8, 10), -12, StockMovementSource.API));
+        verify(emitter, timeout(TIMEOUT_MILLIS)).completeWithError(any(IOException.class));
+        lowStockMonitor.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 20, 10), 12, StockMovementSource.API));
+
+        verify(emitter, after(200).times(1)).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    private static PharmaDTO pharma(Long id, int quantity, int reorderPoint) {
+        return PharmaDTOBuilder.builder()
+                .id(id)
+                .name("Pharma " + id)
+                .quantity(quantity)
+                .reorderPoint(reorderPoint)
+                .build()
+                .toPharmaDTO();
+    }
+
+    private static List<Long> ids(List<LowStockDTO> lowStock) {
+        return lowStock.stream().map(LowStockDTO::getId).collect(Collectors.toList());
+    }
+}
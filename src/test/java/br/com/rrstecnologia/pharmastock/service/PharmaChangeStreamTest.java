@@ -0,0 +1,177 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaChangeDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class PharmaChangeStreamTest {
+
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    private PharmaChangeStream pharmaChangeStream;
+
+    @BeforeEach
+    void setUp() {
+        PharmastockProperties properties = new PharmastockProperties();
+        properties.getChangeStream().setBufferSize(2);
+        properties.getChangeStream().setRetention(3);
+        properties.getChangeStream().setCoalesceWindow(Duration.ofMillis(50));
+        pharmaChangeStream = new PharmaChangeStream(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pharmaChangeStream.stop();
+    }
+
+    @Test
+    void whenSameIdChangesRapidlyThenOnlyLatestChangeIsSent() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        pharmaChangeStream.subscribe(null, emitter);
+
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 11), 1, StockMovementSource.API));
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.created(pharma(2L, 5), StockMovementSource.API));
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 12), 1, StockMovementSource.API));
+
+        List<PharmaChangeDTO> changes = sentChanges(emitter, 2);
+        assertThat(ids(changes), contains(2L, 1L));
+        assertThat(changes.get(0).getName(), is("Pharma 2"));
+        assertThat(changes.get(1).getQuantity(), is(12));
+        assertThat(changes.get(1).getName(), is(nullValue()));
+    }
+
+    @Test
+    void whenCreatedPharmaIsAdjustedBeforeItIsSentThenCreationCarriesTheLatestQuantity() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        pharmaChangeStream.subscribe(null, emitter);
+
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.created(pharma(1L, 5), StockMovementSource.API));
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 8), 3, StockMovementSource.API));
+
+        List<PharmaChangeDTO> changes = sentChanges(emitter, 1);
+        assertThat(changes.get(0).getChange(), is(PharmaChangeType.CREATED));
+        assertThat(changes.get(0).getName(), is("Pharma 1"));
+        assertThat(changes.get(0).getQuantity(), is(8));
+        assertThat(changes.get(0).getSequence(), is(pharmaChangeStream.currentSequence()));
+    }
+
+    @Test
+    void whenCreationIsReplayedWithLaterAdjustmentThenSubscriberStillGetsTheCreation() throws Exception {
+        long lastSequence = pharmaChangeStream.currentSequence();
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.created(pharma(1L, 5), StockMovementSource.API));
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 8), 3, StockMovementSource.API));
+
+        SseEmitter emitter = mock(SseEmitter.class);
+        pharmaChangeStream.subscribe(lastSequence, emitter);
+
+        List<PharmaChangeDTO> changes = sentChanges(emitter, 1);
+        assertThat(changes.get(0).getChange(), is(PharmaChangeType.CREATED));
+        assertThat(changes.get(0).getBrand(), is("EMS"));
+        assertThat(changes.get(0).getQuantity(), is(8));
+    }
+
+    @Test
+    void whenAdjustedPharmaIsDeletedThenBothChangesAreSent() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        pharmaChangeStream.subscribe(null, emitter);
+
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 11), 1, StockMovementSource.API));
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.deleted(pharma(1L, 11), StockMovementSource.API));
+
+        List<PharmaChangeDTO> changes = sentChanges(emitter, 2);
+        assertThat(changes.get(0).getChange(), is(PharmaChangeType.ADJUSTED));
+        assertThat(changes.get(1).getChange(), is(PharmaChangeType.DELETED));
+    }
+
+    @Test
+    void whenSubscriberResumesThenMissedChangesAreReplayed() throws Exception {
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(1L, 11), 1, StockMovementSource.API));
+        long lastSequence = pharmaChangeStream.currentSequence();
+        pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.deleted(pharma(2L, 5), StockMovementSource.API));
+
+        SseEmitter emitter = mock(SseEmitter.class);
+        pharmaChangeStream.subscribe(lastSequence, emitter);
+
+        List<PharmaChangeDTO> changes = sentChanges(emitter, 1);
+        assertThat(ids(changes), contains(2L));
+        assertThat(changes.get(0).getChange(), is(PharmaChangeType.DELETED));
+        assertThat(changes.get(0).getSequence(), is(lastSequence + 1));
+    }
+
+    @Test
+    void whenResumeSequenceIsNoLongerRetainedThenResetIsSent() throws Exception {
+        long lastSequence = pharmaChangeStream.currentSequence();
+        for (long id = 1; id <= 4; id++) {
+            pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(id, 10), 1, StockMovementSource.API));
+        }
+
+        SseEmitter emitter = mock(SseEmitter.class);
+        pharmaChangeStream.subscribe(lastSequence, emitter);
+
+        assertThat(sentData(emitter, 1), hasItem(pharmaChangeStream.currentSequence()));
+    }
+
+    @Test
+    void whenSubscriberBufferOverflowsThenResetIsSent() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        pharmaChangeStream.subscribe(null, emitter);
+
+        for (long id = 1; id <= 3; id++) {
+            pharmaChangeStream.onPharmaChanged(PharmaChangedEvent.adjusted(pharma(id, 10), 1, StockMovementSource.API));
+        }
+
+        assertThat(sentData(emitter, 1), hasItem(pharmaChangeStream.currentSequence()));
+    }
+
+    private static List<PharmaChangeDTO> sentChanges(SseEmitter emitter, int events) throws Exception {
+        return sentData(emitter, events).stream()
+                .filter(PharmaChangeDTO.class::isInstance)
+                .map(PharmaChangeDTO.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Object> sentData(SseEmitter emitter, int events) throws Exception {
+        ArgumentCaptor<SseEmitter.SseEventBuilder> eventCaptor = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, timeout(TIMEOUT_MILLIS).times(events)).send(eventCaptor.capture());
+        return eventCaptor.getAllValues().stream()
+                .flatMap(event -> event.build().stream())
+                .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                .collect(Collectors.toList());
+    }
+
+    private static PharmaDTO pharma(Long id, int quantity) {
+        return PharmaDTOBuilder.builder()
+                .id(id)
+                .name("Pharma " + id)
+                .quantity(quantity)
+                .build()
+                .toPharmaDTO();
+    }
+
+    private static List<Long> ids(List<PharmaChangeDTO> changes) {
+        return changes.stream().map(PharmaChangeDTO::getId).collect(Collectors.toList());
+    }
+}
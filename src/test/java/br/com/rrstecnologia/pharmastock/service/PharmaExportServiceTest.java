@@ -0,0 +1,62 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PharmaExportServiceTest {
+
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private PharmaRepository pharmaRepository;
+    @Mock
+    private StockDeltaAggregator stockDeltaAggregator;
+    @Mock
+    private EntityManager entityManager;
+
+    private PharmaExportService pharmaExportService;
+
+    @BeforeEach
+    void setUp() {
+        pharmaExportService = new PharmaExportService(pharmaRepository, stockDeltaAggregator, entityManager, objectMapper);
+    }
+
+    @Test
+    void whenCatalogIsExportedThenOnePharmaIsWrittenPerLine() throws IOException {
+        PharmaDTO firstPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        PharmaDTO secondPharmaDTO = PharmaDTOBuilder.builder().id(2L).name("Dipirona").build().toPharmaDTO();
+
+        when(pharmaRepository.streamAll()).thenReturn(Stream.of(pharmaMapper.toModel(firstPharmaDTO), pharmaMapper.toModel(secondPharmaDTO)));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        long exported = pharmaExportService.exportCatalog(outputStream);
+
+        String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(exported, is(equalTo(2L)));
+        assertThat(lines, is(arrayWithSize(2)));
+        assertThat(objectMapper.readValue(lines[0], PharmaDTO.class), is(equalTo(firstPharmaDTO)));
+        assertThat(objectMapper.readValue(lines[1], PharmaDTO.class), is(equalTo(secondPharmaDTO)));
+    }
+}
@@ -0,0 +1,118 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.ImportReportDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.PharmaImportFormat;
+import br.com.rrstecnologia.pharmastock.exception.InvalidImportFormatException;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static br.com.rrstecnologia.pharmastock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PharmaImportServiceTest {
+
+    @Mock
+    private PharmaRepository pharmaRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<List<Pharma>> pharmasCaptor;
+
+    private PharmaImportService pharmaImportService;
+
+    @BeforeEach
+    void setUp() {
+        pharmaImportService = new PharmaImportService(pharmaRepository, entityManager, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), eventPublisher, transactionManager, new PharmastockProperties());
+    }
+
+    @Test
+    void whenCsvCatalogIsImportedThenRegisteredAndInvalidRowsAreRejected() throws IOException, InvalidImportFormatException {
+        String csv = "name,brand,max,quantity,type\n" +
+                "\"Loratadina, 10mg\",EMS,50,10,EMS\n" +
+                "Dipirona,EMS,50,10,EMS\n" +
+                "Paracetamol,EMS,500,10,EMS\n";
+
+        when(pharmaRepository.findExistingNames(any())).thenReturn(Collections.singleton("Dipirona"));
+
+        ImportReportDTO report = pharmaImportService.importCatalog(asStream(csv), PharmaImportFormat.CSV);
+
+        assertThat(report.getProcessed(), is(equalTo(3L)));
+        assertThat(report.getImported(), is(equalTo(1L)));
+        assertThat(report.getRejected(), is(equalTo(2L)));
+        verify(pharmaRepository).saveAll(pharmasCaptor.capture());
+        assertThat(pharmasCaptor.getValue(), hasSize(1));
+        assertThat(pharmasCaptor.getValue().get(0).getName(), is(equalTo("Loratadina, 10mg")));
+        assertThat(pharmasCaptor.getValue().get(0).getId(), is(nullValue()));
+    }
+
+    @Test
+    void whenNdjsonCatalogHasMalformedAndDuplicatedRowsThenTheyAreRejected() throws IOException, InvalidImportFormatException {
+        String ndjson = asJsonString(PharmaDTOBuilder.builder().build().toPharmaDTO()) + "\n" +
+                "{not json\n" +
+                "\n" +
+                asJsonString(PharmaDTOBuilder.builder().id(2L).build().toPharmaDTO()) + "\n";
+
+        when(pharmaRepository.findExistingNames(any())).thenReturn(Collections.emptySet());
+
+        ImportReportDTO report = pharmaImportService.importCatalog(asStream(ndjson), PharmaImportFormat.NDJSON);
+
+        assertThat(report.getProcessed(), is(equalTo(3L)));
+        assertThat(report.getImported(), is(equalTo(1L)));
+        assertThat(report.getRejected(), is(equalTo(2L)));
+        assertThat(report.getRejections().get(0).getLine(), is(equalTo(2L)));
+        assertThat(report.getRejections().get(1).getLine(), is(equalTo(4L)));
+    }
+
+    @Test
+    void whenCsvHeaderIsMissingColumnsThenAnExceptionShouldBeThrown() {
+        String csv = "name,brand\nLoratadina,EMS\n";
+
+        assertThrows(InvalidImportFormatException.class, () -> pharmaImportService.importCatalog(asStream(csv), PharmaImportFormat.CSV));
+    }
+
+    @Test
+    void whenCsvLineHasQuotedValuesThenTheyAreSplitCorrectly() {
+        assertThat(PharmaImportService.splitCsv("\"Dipirona \"\"gotas\"\", 20ml\",EMS,50"),
+                contains("Dipirona \"gotas\", 20ml", "EMS", "50"));
+    }
+
+    private InputStream asStream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,105 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaSummaryDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.CatalogLoadedEvent;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class PharmaNameIndexTest {
+
+    private PharmaNameIndex pharmaNameIndex;
+
+    @BeforeEach
+    void setUp() {
+        pharmaNameIndex = new PharmaNameIndex();
+        pharmaNameIndex.rebuild(Stream.of(
+                new PharmaSummaryDTO(1L, "Ácido Acetilsalicílico", "Bayer", PharmaType.HYPER),
+                new PharmaSummaryDTO(2L, "Dipirona Sódica", "EMS", PharmaType.EMS),
+                new PharmaSummaryDTO(3L, "Diclofenaco", "Medley", PharmaType.ACHE)));
+    }
+
+    @Test
+    void whenPrefixIsSearchedThenMatchesIgnoreCaseAndAccents() {
+        assertThat(names(pharmaNameIndex.search("ACIDO", 10)), contains("Ácido Acetilsalicílico"));
+        assertThat(names(pharmaNameIndex.search("dipirona sod", 10)), contains("Dipirona Sódica"));
+    }
+
+    @Test
+    void whenPrefixIsSearchedThenResultsAreSortedAndLimited() {
+        assertThat(names(pharmaNameIndex.search("di", 10)), contains("Diclofenaco", "Dipirona Sódica"));
+        assertThat(pharmaNameIndex.search("di", 1), hasSize(1));
+    }
+
+    @Test
+    void whenBrandPrefixIsSearchedThenPharmaIsReturnedOnce() {
+        assertThat(names(pharmaNameIndex.search("e", 10)), contains("Dipirona Sódica"));
+    }
+
+    @Test
+    void whenCatalogIsLoadedThenIndexIsReplaced() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().id(4L).name("Loratadina").build().toPharmaDTO();
+
+        pharmaNameIndex.onCatalogLoaded(new CatalogLoadedEvent(Collections.singletonList(pharmaDTO)));
+
+        assertThat(names(pharmaNameIndex.search("lora", 10)), contains("Loratadina"));
+        assertThat(pharmaNameIndex.search("di", 10), is(empty()));
+    }
+
+    @Test
+    void whenPharmaIsCreatedBeforeTheCatalogIsLoadedThenTheIndexKeepsIt() {
+        PharmaDTO loaded = PharmaDTOBuilder.builder().id(1L).name("Dipirona").build().toPharmaDTO();
+        PharmaDTO created = PharmaDTOBuilder.builder().id(4L).name("Loratadina").build().toPharmaDTO();
+        PharmaNameIndex startingIndex = new PharmaNameIndex();
+
+        startingIndex.onPharmaChanged(PharmaChangedEvent.created(created, StockMovementSource.API));
+        startingIndex.onCatalogLoaded(new CatalogLoadedEvent(Collections.singletonList(loaded)));
+
+        assertThat(names(startingIndex.search("lora", 10)), contains("Loratadina"));
+        assertThat(names(startingIndex.search("dipi", 10)), contains("Dipirona"));
+    }
+
+    @Test
+    void whenPharmaIsCreatedOrDeletedThenIndexFollows() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().id(4L).name("Loratadina").build().toPharmaDTO();
+
+        pharmaNameIndex.onPharmaChanged(PharmaChangedEvent.created(pharmaDTO, StockMovementSource.API));
+        assertThat(names(pharmaNameIndex.search("lora", 10)), contains("Loratadina"));
+
+        pharmaNameIndex.onPharmaChanged(PharmaChangedEvent.deleted(pharmaDTO, StockMovementSource.API));
+        assertThat(pharmaNameIndex.search("lora", 10), is(empty()));
+    }
+
+    @Test
+    void whenPharmaChangesWhileRowsAreReadThenTheSwappedIndexKeepsTheChange() {
+        PharmaDTO created = PharmaDTOBuilder.builder().id(4L).name("Loratadina").build().toPharmaDTO();
+        PharmaDTO deleted = PharmaDTOBuilder.builder().id(2L).name("Dipirona Sódica").brand("EMS").build().toPharmaDTO();
+
+        pharmaNameIndex.beginRecording();
+        pharmaNameIndex.onPharmaChanged(PharmaChangedEvent.created(created, StockMovementSource.API));
+        pharmaNameIndex.onPharmaChanged(PharmaChangedEvent.deleted(deleted, StockMovementSource.API));
+        pharmaNameIndex.swap(Stream.of(new PharmaSummaryDTO(2L, "Dipirona Sódica", "EMS", PharmaType.EMS)));
+
+        assertThat(names(pharmaNameIndex.search("lora", 10)), contains("Loratadina"));
+        assertThat(pharmaNameIndex.search("dipirona", 10), is(empty()));
+    }
+
+    private static List<String> names(List<PharmaSummaryDTO> pharmas) {
+        return pharmas.stream().map(PharmaSummaryDTO::getName).collect(Collectors.toList());
+    }
+}
@@ -1,46 +1,87 @@
 package br.com.rrstecnologia.pharmastock.service;
 
 import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.config.ReplicaReads;
 import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.PharmaFilterDTO;
 import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.exception.InvalidReorderPointException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaAlreadyRegisteredException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
 import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
 import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
 import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.PharmaStockBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_MOCKS;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+@ExtendWith(MockitoExtension.class)
 public class PharmaServiceTest {
 
     private static final long INVALID_PHARMA_ID = 1L;
     private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
     @Mock
     private PharmaRepository pharmaRepository;
+    @Mock
+    private PharmaStockBatchRepository pharmaStockBatchRepository;
+    @Mock
+    private StockDeltaAggregator stockDeltaAggregator;
+    @Spy
+    private PharmaNameCache pharmaNameCache = new PharmaNameCache(new PharmastockProperties(), new SimpleMeterRegistry());
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private ReplicaReads replicaReads;
+    @Spy
+    private StockHolds stockHolds = new StockHolds();
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class, RETURNS_MOCKS));
     @InjectMocks
     private PharmaService pharmaService;
 
     @Test
-    void whenNewBeerInformedThenShouldBeCreated() throws PharmaAlreadyRegisteredException {
+    void whenNewBeerInformedThenShouldBeCreated() throws PharmaAlreadyRegisteredException, InvalidReorderPointException {
         PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
         Pharma expectedSavedPharma = pharmaMapper.toModel(pharmaDTO);
 
@@ -64,6 +105,14 @@ public class PharmaServiceTest {
         assertThrows(PharmaAlreadyRegisteredException.class, () -> pharmaService.createPharma(pharmaDTO));
     }
 
+    @Test
+    void whenReorderPointIsAboveMaxThenAnExceptionShouldBeThrown() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().max(20).reorderPoint(21).build().toPharmaDTO();
+
+        assertThrows(InvalidReorderPointException.class, () -> pharmaService.createPharma(pharmaDTO));
+        verify(pharmaRepository, never()).save(any(Pharma.class));
+    }
+
     @Test
     void whenValidBeerNameIsGivenThenReturnABeer() throws PharmaNotFoundException {
         PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
@@ -86,25 +135,84 @@ public class PharmaServiceTest {
     }
 
     @Test
-    void whenListBeerIsCalledThenReturnAListOfBeers() {
+    void whenBeerNameIsLookedUpTwiceThenRepositoryIsHitOnce() throws PharmaNotFoundException {
         PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
         Pharma expectedFoundBeer = pharmaMapper.toModel(expectedPharmaDTO);
 
-        when(pharmaRepository.findAll()).thenReturn(Collections.singletonList(expectedFoundBeer));
+        when(pharmaRepository.findByName(expectedPharmaDTO.getName())).thenReturn(Optional.of(expectedFoundBeer));
 
-        List<PharmaDTO> foundPharmaDTO = pharmaService.listAll();
+        pharmaService.findByName(expectedPharmaDTO.getName());
+        PharmaDTO foundBeerDTO = pharmaService.findByName(expectedPharmaDTO.getName());
 
-        assertThat(foundPharmaDTO, is(not(empty())));
-        assertThat(foundPharmaDTO.get(0), is(equalTo(expectedPharmaDTO)));
+        assertThat(foundBeerDTO, is(equalTo(expectedPharmaDTO)));
+        verify(pharmaRepository, times(1)).findByName(expectedPharmaDTO.getName());
+        assertThat(pharmaNameCache.stats().hitCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    void whenNotRegisteredBeerNameIsLookedUpTwiceThenMissIsCached() {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+
+        when(pharmaRepository.findByName(expectedPharmaDTO.getName())).thenReturn(Optional.empty());
+
+        assertThrows(PharmaNotFoundException.class, () -> pharmaService.findByName(expectedPharmaDTO.getName()));
+        assertThrows(PharmaNotFoundException.class, () -> pharmaService.findByName(expectedPharmaDTO.getName()));
+        verify(pharmaRepository, times(1)).findByName(expectedPharmaDTO.getName());
+    }
+
+    @Test
+    void whenBeerStockChangesThenCachedNameIsInvalidated() throws PharmaNotFoundException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        Pharma expectedFoundBeer = pharmaMapper.toModel(expectedPharmaDTO);
+
+        when(pharmaRepository.findByName(expectedPharmaDTO.getName())).thenReturn(Optional.of(expectedFoundBeer));
+
+        pharmaService.findByName(expectedPharmaDTO.getName());
+        pharmaService.onPharmaChanged(PharmaChangedEvent.adjusted(expectedPharmaDTO, 10, StockMovementSource.API));
+        pharmaService.findByName(expectedPharmaDTO.getName());
+
+        verify(pharmaRepository, times(2)).findByName(expectedPharmaDTO.getName());
+        verify(replicaReads).allow(pharmaService.version(expectedPharmaDTO.getName()));
+    }
+
+    @Test
+    void whenListBeerIsCalledThenReturnAListOfBeers() {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        Pageable pageable = PageRequest.of(0, 50);
+
+        when(pharmaRepository.findFiltered(null, null, null, pageable))
+                .thenReturn(new PageImpl<>(Collections.singletonList(expectedPharmaDTO.toBuilder().build()), pageable, 1));
+
+        Slice<PharmaDTO> foundPharmaDTO = pharmaService.listAll(new PharmaFilterDTO(), pageable);
+
+        assertThat(foundPharmaDTO.getContent(), is(not(empty())));
+        assertThat(foundPharmaDTO.getContent().get(0), is(equalTo(expectedPharmaDTO)));
     }
 
     @Test
     void whenListBeerIsCalledThenReturnAnEmptyList() {
-        when(pharmaRepository.findAll()).thenReturn(Collections.EMPTY_LIST);
+        Pageable pageable = PageRequest.of(0, 50);
+
+        when(pharmaRepository.findFiltered(null, null, null, pageable)).thenReturn(Page.empty(pageable));
 
-        List<PharmaDTO> foundPharmaDTO = pharmaService.listAll();
+        Slice<PharmaDTO> foundPharmaDTO = pharmaService.listAll(new PharmaFilterDTO(), pageable);
 
-        assertThat(foundPharmaDTO, is(empty()));
+        assertThat(foundPharmaDTO.getContent(), is(empty()));
+    }
+
+    @Test
+    void whenListBeerIsCalledWithAfterIdThenKeysetPageIsReturned() {
+        PharmaDTO firstPharmaDTO = PharmaDTOBuilder.builder().id(2L).build().toPharmaDTO();
+        PharmaDTO secondPharmaDTO = PharmaDTOBuilder.builder().id(3L).name("Dipirona").build().toPharmaDTO();
+        PharmaFilterDTO filter = PharmaFilterDTO.builder().type(PharmaType.EMS).afterId(1L).build();
+
+        when(pharmaRepository.findFilteredAfter(PharmaType.EMS, null, null, 1L, PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(firstPharmaDTO.toBuilder().build(), secondPharmaDTO.toBuilder().build()));
+
+        Slice<PharmaDTO> foundPharmaDTO = pharmaService.listAll(filter, PageRequest.of(0, 1));
+
+        assertThat(foundPharmaDTO.getContent(), contains(firstPharmaDTO));
+        assertThat(foundPharmaDTO.hasNext(), is(true));
     }
 
     @Test
@@ -133,11 +241,13 @@ public class PharmaServiceTest {
         PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
         Pharma expectedPharma = pharmaMapper.toModel(expectedPharmaDTO);
 
-        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
-        when(pharmaRepository.save(expectedPharma)).thenReturn(expectedPharma);
-
         int quantityToIncrement = 10;
         int expectedQuantityAfterIncrement = expectedPharmaDTO.getQuantity() + quantityToIncrement;
+        expectedPharma.setQuantity(expectedQuantityAfterIncrement);
+
+        when(pharmaStockBatchRepository.adjustQuantity(expectedPharmaDTO.getId(), quantityToIncrement, 0)).thenReturn(1);
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
+
         PharmaDTO incrementedBeerDTO = pharmaService.increment(expectedPharmaDTO.getId(), quantityToIncrement);
 
         assertThat(incrementedBeerDTO.getQuantity(), is(equalTo(expectedQuantityAfterIncrement)));
@@ -149,16 +259,19 @@ public class PharmaServiceTest {
         PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
         Pharma expectedPharma = pharmaMapper.toModel(expectedPharmaDTO);
 
+        int quantityToIncrement = 80;
+        when(pharmaStockBatchRepository.adjustQuantity(expectedPharmaDTO.getId(), quantityToIncrement, 0)).thenReturn(0);
         when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
 
-        int quantityToIncrement = 80;
         assertThrows(PharmaStockExceededException.class, () -> pharmaService.increment(expectedPharmaDTO.getId(), quantityToIncrement));
+        verify(eventPublisher, never()).publishEvent(any(PharmaChangedEvent.class));
     }
 
     @Test
     void whenIncrementIsCalledWithInvalidIdThenThrowException() {
         int quantityToIncrement = 10;
 
+        when(pharmaStockBatchRepository.adjustQuantity(INVALID_PHARMA_ID, quantityToIncrement, 0)).thenReturn(0);
         when(pharmaRepository.findById(INVALID_PHARMA_ID)).thenReturn(Optional.empty());
 
         assertThrows(PharmaNotFoundException.class, () -> pharmaService.increment(INVALID_PHARMA_ID, quantityToIncrement));
@@ -169,11 +282,13 @@ public class PharmaServiceTest {
         PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
         Pharma expectedPharma = pharmaMapper.toModel(expectedPharmaDTO);
 
-        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
-        when(pharmaRepository.save(expectedPharma)).thenReturn(expectedPharma);
-
         int quantityToDecrement = 5;
         int expectedQuantityAfterDecrement = expectedPharmaDTO.getQuantity() - quantityToDecrement;
+        expectedPharma.setQuantity(expectedQuantityAfterDecrement);
+
+        when(pharmaStockBatchRepository.adjustQuantity(expectedPharmaDTO.getId(), -quantityToDecrement, 0)).thenReturn(1);
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
+
         PharmaDTO incrementedBeerDTO = pharmaService.decrement(expectedPharmaDTO.getId(), quantityToDecrement);
 
         assertThat(incrementedBeerDTO.getQuantity(), is(equalTo(expectedQuantityAfterDecrement)));
@@ -185,11 +300,13 @@ public class PharmaServiceTest {
         PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
         Pharma expectedPharma = pharmaMapper.toModel(expectedPharmaDTO);
 
-        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
-        when(pharmaRepository.save(expectedPharma)).thenReturn(expectedPharma);
-
         int quantityToDecrement = 10;
         int expectedQuantityAfterDecrement = expectedPharmaDTO.getQuantity() - quantityToDecrement;
+        expectedPharma.setQuantity(expectedQuantityAfterDecrement);
+
+        when(pharmaStockBatchRepository.adjustQuantity(expectedPharmaDTO.getId(), -quantityToDecrement, 0)).thenReturn(1);
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
+
         PharmaDTO incrementedBeerDTO = pharmaService.decrement(expectedPharmaDTO.getId(), quantityToDecrement);
 
         assertThat(expectedQuantityAfterDecrement, is(equalTo(0)));
@@ -201,18 +318,107 @@ public class PharmaServiceTest {
         PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
         Pharma expectedPharma = pharmaMapper.toModel(expectedPharmaDTO);
 
+        int quantityToDecrement = 80;
+        when(pharmaStockBatchRepository.adjustQuantity(expectedPharmaDTO.getId(), -quantityToDecrement, 0)).thenReturn(0);
         when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
 
-        int quantityToDecrement = 80;
         assertThrows(PharmaStockExceededException.class, () -> pharmaService.decrement(expectedPharmaDTO.getId(), quantityToDecrement));
     }
 
+    @Test
+    void whenDecrementWouldTakeHeldUnitsThenThrowException() {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        Pharma expectedPharma = pharmaMapper.toModel(expectedPharmaDTO);
+
+        stockHolds.add(expectedPharmaDTO.getId(), 6);
+        when(pharmaStockBatchRepository.adjustQuantity(expectedPharmaDTO.getId(), -5, 6)).thenReturn(0);
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(expectedPharma));
+
+        assertThrows(PharmaStockExceededException.class, () -> pharmaService.decrement(expectedPharmaDTO.getId(), 5));
+    }
+
+    @Test
+    void whenHoldIsRegisteredWhileDecrementingThenDecrementIsRolledBack() {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        Pharma decrementedPharma = pharmaMapper.toModel(expectedPharmaDTO);
+        decrementedPharma.setQuantity(5);
+
+        when(pharmaStockBatchRepository.adjustQuantity(expectedPharmaDTO.getId(), -5, 0)).thenAnswer(invocation -> {
+            stockHolds.add(expectedPharmaDTO.getId(), 6);
+            return 1;
+        });
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(decrementedPharma));
+
+        assertThrows(PharmaStockExceededException.class, () -> pharmaService.decrement(expectedPharmaDTO.getId(), 5));
+        verify(eventPublisher, never()).publishEvent(any(PharmaChangedEvent.class));
+    }
+
+    @Test
+    void whenHeldUnitsAreDecrementedThenOnlyOtherHoldsAreTheFloor() throws PharmaNotFoundException, PharmaStockExceededException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        Pharma decrementedPharma = pharmaMapper.toModel(expectedPharmaDTO);
+        decrementedPharma.setQuantity(6);
+
+        stockHolds.add(expectedPharmaDTO.getId(), 6);
+        when(pharmaStockBatchRepository.adjustQuantity(expectedPharmaDTO.getId(), -4, 2)).thenReturn(1);
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(decrementedPharma));
+
+        PharmaDTO decrementedPharmaDTO = pharmaService.decrementHeld(expectedPharmaDTO.getId(), 4);
+
+        assertThat(decrementedPharmaDTO.getQuantity(), is(equalTo(6)));
+    }
+
     @Test
     void whenDecrementIsCalledWithInvalidIdThenThrowException() {
         int quantityToDecrement = 10;
 
+        when(pharmaStockBatchRepository.adjustQuantity(INVALID_PHARMA_ID, -quantityToDecrement, 0)).thenReturn(0);
         when(pharmaRepository.findById(INVALID_PHARMA_ID)).thenReturn(Optional.empty());
 
         assertThrows(PharmaNotFoundException.class, () -> pharmaService.decrement(INVALID_PHARMA_ID, quantityToDecrement));
     }
+
+    @Test
+    void whenWriteBehindIsEnabledThenAdjustmentOpensNoTransactionAndRunsNoStatement() throws PharmaNotFoundException, PharmaStockExceededException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        PharmaDTO adjustedPharmaDTO = expectedPharmaDTO.toBuilder().quantity(5).build();
+
+        when(stockDeltaAggregator.isEnabled()).thenReturn(true);
+        when(stockDeltaAggregator.adjust(eq(expectedPharmaDTO.getId()), eq(-5), any(), eq(StockMovementSource.API))).thenReturn(adjustedPharmaDTO);
+
+        PharmaDTO decrementedPharmaDTO = pharmaService.decrement(expectedPharmaDTO.getId(), 5);
+
+        assertThat(decrementedPharmaDTO.getQuantity(), is(equalTo(5)));
+        ArgumentCaptor<PharmaChangedEvent> eventCaptor = ArgumentCaptor.forClass(PharmaChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().isWriteBehind(), is(true));
+        verify(transactionTemplate, never()).execute(any());
+        verifyNoInteractions(pharmaRepository, pharmaStockBatchRepository);
+    }
+
+    @Test
+    void whenPharmaChangeIsCommittedThenItsVersionAndTheCatalogVersionMoveForward() {
+        PharmaDTO changedPharma = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        long catalogVersion = pharmaService.catalogVersion();
+        long otherVersion = pharmaService.version("other");
+
+        pharmaService.onPharmaChanged(PharmaChangedEvent.adjusted(changedPharma, 1, StockMovementSource.API));
+
+        assertThat(pharmaService.catalogVersion(), is(greaterThan(catalogVersion)));
+        assertThat(pharmaService.version(changedPharma.getName()), is(equalTo(pharmaService.catalogVersion())));
+        assertThat(pharmaService.version("other"), is(equalTo(otherVersion)));
+    }
+
+    @Test
+    void whenListBeerIsCalledWithWriteBehindThenPendingQuantityIsApplied() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        Pageable pageable = PageRequest.of(0, 50);
+
+        when(pharmaRepository.findFiltered(null, null, null, pageable))
+                .thenReturn(new PageImpl<>(Collections.singletonList(pharmaDTO), pageable, 1));
+
+        pharmaService.listAll(new PharmaFilterDTO(), pageable);
+
+        verify(stockDeltaAggregator).applyPendingQuantity(pharmaDTO);
+    }
 }
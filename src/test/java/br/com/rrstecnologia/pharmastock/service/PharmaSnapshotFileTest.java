@@ -0,0 +1,63 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class PharmaSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void whenSnapshotIsWrittenThenItIsReadBackUnchanged() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        Instant takenAt = Instant.ofEpochMilli(1_600_000_000_000L);
+        List<PharmaDTO> pharmas = Arrays.asList(
+                PharmaDTOBuilder.builder().id(1L).name("Ácido Acetilsalicílico").brand("Bayer").type(PharmaType.HYPER).build().toPharmaDTO(),
+                PharmaDTOBuilder.builder().id(2L).name("Dipirona").quantity(0).build().toPharmaDTO(),
+                PharmaDTOBuilder.builder().id(7L).name("Loratadina").max(30).quantity(30).build().toPharmaDTO());
+
+        PharmaSnapshotFile.write(file, new PharmaSnapshotFile.Snapshot(takenAt, 41L, pharmas));
+        Optional<PharmaSnapshotFile.Snapshot> snapshot = PharmaSnapshotFile.read(file);
+
+        assertThat(snapshot.isPresent(), is(true));
+        assertThat(snapshot.get().getTakenAt(), is(equalTo(takenAt)));
+        assertThat(snapshot.get().getLastMovementId(), is(equalTo(41L)));
+        assertThat(snapshot.get().getPharmas(), is(equalTo(pharmas)));
+    }
+
+    @Test
+    void whenSnapshotIsCorruptedThenItIsIgnored() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        PharmaSnapshotFile.write(file, new PharmaSnapshotFile.Snapshot(Instant.now(), 0L,
+                Arrays.asList(PharmaDTOBuilder.builder().build().toPharmaDTO())));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 30);
+        }
+
+        assertThat(PharmaSnapshotFile.read(file).isPresent(), is(false));
+    }
+
+    @Test
+    void whenSnapshotIsMissingThenNothingIsRead() throws IOException {
+        assertThat(PharmaSnapshotFile.read(directory.resolve("missing.bin")).isPresent(), is(false));
+    }
+}
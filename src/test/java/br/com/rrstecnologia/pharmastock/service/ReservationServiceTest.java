@@ -0,0 +1,113 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.ReservationDTO;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.exception.ReservationNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationServiceTest {
+
+    private static final Long PHARMA_ID = 1L;
+
+    @Mock
+    private PharmaService pharmaService;
+
+    private ReservationService reservationService;
+
+    @BeforeEach
+    void setUp() {
+        reservationService = new ReservationService(pharmaService, new StockHolds(), new PharmastockProperties());
+    }
+
+    @Test
+    void whenUnitsAreReservedThenTheyAreNoLongerAvailable() throws Exception {
+        when(pharmaService.lockQuantity(PHARMA_ID)).thenReturn(10);
+
+        ReservationDTO firstReservation = reservationService.reserve(PHARMA_ID, 6, null);
+
+        assertThat(firstReservation.getAvailable(), is(equalTo(4)));
+        assertThat(reservationService.held(PHARMA_ID), is(equalTo(6)));
+        assertThrows(PharmaStockExceededException.class, () -> reservationService.reserve(PHARMA_ID, 5, null));
+        assertThat(reservationService.held(PHARMA_ID), is(equalTo(6)));
+    }
+
+    @Test
+    void whenCommittedDecrementFailsThenTheHoldIsKept() throws Exception {
+        when(pharmaService.lockQuantity(PHARMA_ID)).thenReturn(10);
+        ReservationDTO reservation = reservationService.reserve(PHARMA_ID, 3, null);
+        when(pharmaService.decrementHeld(PHARMA_ID, 3)).thenThrow(new PharmaStockExceededException(PHARMA_ID, 3));
+
+        assertThrows(PharmaStockExceededException.class, () -> reservationService.commit(reservation.getId()));
+
+        assertThat(reservationService.held(PHARMA_ID), is(equalTo(3)));
+        reservationService.release(reservation.getId());
+        assertThat(reservationService.held(PHARMA_ID), is(equalTo(0)));
+    }
+
+    @Test
+    void whenReservationIsCommittedThenHeldUnitsAreDecremented() throws Exception {
+        when(pharmaService.lockQuantity(PHARMA_ID)).thenReturn(10);
+
+        ReservationDTO reservation = reservationService.reserve(PHARMA_ID, 3, null);
+        reservationService.commit(reservation.getId());
+
+        verify(pharmaService).decrementHeld(PHARMA_ID, 3);
+        assertThat(reservationService.held(PHARMA_ID), is(equalTo(0)));
+        assertThrows(ReservationNotFoundException.class, () -> reservationService.commit(reservation.getId()));
+    }
+
+    @Test
+    void whenReservationIsReleasedThenUnitsAreAvailableAgain() throws Exception {
+        when(pharmaService.lockQuantity(PHARMA_ID)).thenReturn(10);
+
+        ReservationDTO reservation = reservationService.reserve(PHARMA_ID, 10, null);
+        reservationService.release(reservation.getId());
+
+        assertThat(reservationService.reserve(PHARMA_ID, 10, null).getAvailable(), is(equalTo(0)));
+    }
+
+    @Test
+    void whenReservationExpiresThenHeldUnitsAreReturned() throws Exception {
+        when(pharmaService.lockQuantity(PHARMA_ID)).thenReturn(10);
+
+        ReservationDTO reservation = reservationService.reserve(PHARMA_ID, 4, 30);
+        reservationService.expire(reservation.getExpiresAt().toEpochMilli() - 1);
+        assertThat(reservationService.held(PHARMA_ID), is(equalTo(4)));
+
+        reservationService.expire(reservation.getExpiresAt().plus(Duration.ofSeconds(1)).toEpochMilli());
+
+        assertThat(reservationService.held(PHARMA_ID), is(equalTo(0)));
+        assertThrows(ReservationNotFoundException.class, () -> reservationService.release(reservation.getId()));
+    }
+
+    @Test
+    void whenPharmaIsDeletedThenItsHoldsAreDropped() throws Exception {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().id(PHARMA_ID).quantity(10).build().toPharmaDTO();
+        when(pharmaService.lockQuantity(PHARMA_ID)).thenReturn(10);
+
+        ReservationDTO reservation = reservationService.reserve(PHARMA_ID, 4, null);
+        reservationService.onPharmaChanged(PharmaChangedEvent.deleted(pharmaDTO, StockMovementSource.API));
+
+        assertThat(reservationService.held(PHARMA_ID), is(equalTo(0)));
+        assertThrows(ReservationNotFoundException.class, () -> reservationService.commit(reservation.getId()));
+    }
+}
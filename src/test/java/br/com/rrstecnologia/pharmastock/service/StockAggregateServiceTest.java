@@ -0,0 +1,105 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAggregateDTO;
+import br.com.rrstecnologia.pharmastock.enums.PharmaType;
+import br.com.rrstecnologia.pharmastock.enums.StockAggregateGrouping;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockAggregateServiceTest {
+
+    @Mock
+    private PharmaRepository pharmaRepository;
+
+    @Mock
+    private StockDeltaAggregator stockDeltaAggregator;
+
+    private StockAggregateService stockAggregateService;
+
+    @BeforeEach
+    void setUp() {
+        stockAggregateService = new StockAggregateService(pharmaRepository, stockDeltaAggregator, new PharmastockProperties());
+    }
+
+    @Test
+    void whenCatalogIsReconciledThenGroupsAreRolledUpByTheRequestedGrouping() {
+        when(pharmaRepository.sumByTypeAndBrand()).thenReturn(Arrays.asList(
+                new StockAggregateDTO(PharmaType.EMS, "Medley", 2L, 30L, 100L),
+                new StockAggregateDTO(PharmaType.EMS, "Neo Química", 1L, 10L, 50L),
+                new StockAggregateDTO(PharmaType.ACHE, "Medley", 1L, 5L, 50L)));
+
+        assertThat(stockAggregateService.reconcile(), is(true));
+
+        assertThat(stockAggregateService.aggregates(StockAggregateGrouping.TYPE), contains(
+                new StockAggregateDTO(PharmaType.EMS, null, 3L, 40L, 150L),
+                new StockAggregateDTO(PharmaType.ACHE, null, 1L, 5L, 50L)));
+        assertThat(stockAggregateService.aggregates(StockAggregateGrouping.BRAND), contains(
+                new StockAggregateDTO(null, "Medley", 3L, 35L, 150L),
+                new StockAggregateDTO(null, "Neo Química", 1L, 10L, 50L)));
+        assertThat(stockAggregateService.aggregates(StockAggregateGrouping.TYPE_AND_BRAND).size(), is(equalTo(3)));
+    }
+
+    @Test
+    void whenPharmasChangeThenCountersFollowWithoutQueryingTheCatalog() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().max(50).quantity(10).build().toPharmaDTO();
+
+        stockAggregateService.onPharmaChanged(PharmaChangedEvent.created(pharmaDTO, StockMovementSource.API));
+        pharmaDTO.setQuantity(15);
+        stockAggregateService.onPharmaChanged(PharmaChangedEvent.adjusted(pharmaDTO, 5, StockMovementSource.API));
+
+        List<StockAggregateDTO> aggregates = stockAggregateService.aggregates(StockAggregateGrouping.TYPE_AND_BRAND);
+        assertThat(aggregates, contains(new StockAggregateDTO(pharmaDTO.getType(), pharmaDTO.getBrand(), 1L, 15L, 50L)));
+        assertThat(aggregates.get(0).getUtilization(), is(equalTo(0.3)));
+
+        stockAggregateService.onPharmaChanged(PharmaChangedEvent.deleted(pharmaDTO, StockMovementSource.API));
+
+        assertThat(stockAggregateService.aggregates(StockAggregateGrouping.TYPE_AND_BRAND), is(Collections.emptyList()));
+    }
+
+    @Test
+    void whenPharmaChangesDuringReconciliationThenTheChangeIsAppliedOnTopOfTheResult() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().max(50).quantity(10).build().toPharmaDTO();
+
+        when(pharmaRepository.sumByTypeAndBrand()).thenAnswer(invocation -> {
+            stockAggregateService.onPharmaChanged(PharmaChangedEvent.created(pharmaDTO, StockMovementSource.API));
+            return Collections.singletonList(new StockAggregateDTO(pharmaDTO.getType(), pharmaDTO.getBrand(), 2L, 30L, 100L));
+        });
+
+        assertThat(stockAggregateService.reconcile(), is(true));
+        assertThat(stockAggregateService.aggregates(StockAggregateGrouping.TYPE_AND_BRAND),
+                contains(new StockAggregateDTO(pharmaDTO.getType(), pharmaDTO.getBrand(), 3L, 40L, 150L)));
+
+        stockAggregateService.onPharmaChanged(PharmaChangedEvent.adjusted(pharmaDTO, -5, StockMovementSource.API));
+
+        assertThat(stockAggregateService.aggregates(StockAggregateGrouping.TYPE_AND_BRAND),
+                contains(new StockAggregateDTO(pharmaDTO.getType(), pharmaDTO.getBrand(), 3L, 35L, 150L)));
+    }
+
+    @Test
+    void whenWriteBehindDeltasCannotBeFlushedThenReconciliationIsSkipped() {
+        when(stockDeltaAggregator.isEnabled()).thenReturn(true);
+        when(stockDeltaAggregator.hasUnflushedDeltas()).thenReturn(true);
+
+        assertThat(stockAggregateService.reconcile(), is(false));
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentDTO;
+import br.com.rrstecnologia.pharmastock.dto.StockAdjustmentResultDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.StockAdjustmentStatus;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.PharmaStockBatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockBatchServiceTest {
+
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+    private final StockHolds stockHolds = new StockHolds();
+
+    @Mock
+    private PharmaRepository pharmaRepository;
+    @Mock
+    private PharmaStockBatchRepository pharmaStockBatchRepository;
+    @Mock
+    private StockDeltaAggregator stockDeltaAggregator;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<PharmaChangedEvent> eventCaptor;
+    @Captor
+    private ArgumentCaptor<ToIntFunction<StockAdjustmentDTO>> floorCaptor;
+
+    private StockBatchService stockBatchService;
+
+    @BeforeEach
+    void setUp() {
+        stockBatchService = new StockBatchService(pharmaRepository, pharmaStockBatchRepository,
+                stockDeltaAggregator, stockHolds, eventPublisher, transactionManager, new PharmastockProperties());
+    }
+
+    @Test
+    void whenBatchIsCalledThenEachAdjustmentIsReportedInRequestOrder() {
+        StockAdjustmentDTO exceeded = StockAdjustmentDTO.builder().id(2L).delta(80).build();
+        StockAdjustmentDTO applied = StockAdjustmentDTO.builder().id(1L).delta(10).build();
+        StockAdjustmentDTO notFound = StockAdjustmentDTO.builder().id(3L).delta(5).build();
+        Pharma appliedPharma = pharmaMapper.toModel(PharmaDTOBuilder.builder().id(1L).quantity(20).build().toPharmaDTO());
+        Pharma exceededPharma = pharmaMapper.toModel(PharmaDTOBuilder.builder().id(2L).name("Dipirona").build().toPharmaDTO());
+
+        when(pharmaStockBatchRepository.adjustQuantities(eq(Arrays.asList(applied, exceeded, notFound)), any())).thenReturn(new int[]{1, 0, 0});
+        when(pharmaRepository.findAllById(Arrays.asList(1L, 2L, 3L))).thenReturn(Arrays.asList(appliedPharma, exceededPharma));
+
+        List<StockAdjustmentResultDTO> results = stockBatchService.adjust(Arrays.asList(exceeded, applied, notFound));
+
+        assertThat(results.get(0).getId(), is(equalTo(2L)));
+        assertThat(results.get(0).getStatus(), is(equalTo(StockAdjustmentStatus.STOCK_EXCEEDED)));
+        assertThat(results.get(1).getStatus(), is(equalTo(StockAdjustmentStatus.APPLIED)));
+        assertThat(results.get(1).getQuantity(), is(equalTo(20)));
+        assertThat(results.get(2).getStatus(), is(equalTo(StockAdjustmentStatus.NOT_FOUND)));
+        assertThat(results.get(2).getQuantity(), is(nullValue()));
+        verify(eventPublisher, times(1)).publishEvent(any(PharmaChangedEvent.class));
+    }
+
+    @Test
+    void whenSamePharmaIsAdjustedTwiceThenEachEventCarriesItsOwnResultingQuantity() {
+        StockAdjustmentDTO first = StockAdjustmentDTO.builder().id(1L).delta(10).build();
+        StockAdjustmentDTO second = StockAdjustmentDTO.builder().id(1L).delta(-4).build();
+        Pharma pharma = pharmaMapper.toModel(PharmaDTOBuilder.builder().id(1L).quantity(26).build().toPharmaDTO());
+
+        when(pharmaStockBatchRepository.adjustQuantities(eq(Arrays.asList(first, second)), any())).thenReturn(new int[]{1, 1});
+        when(pharmaRepository.findAllById(Collections.singletonList(1L))).thenReturn(Collections.singletonList(pharma));
+
+        stockBatchService.adjust(Arrays.asList(first, second));
+
+        verify(eventPublisher, times(2)).publishEvent(eventCaptor.capture());
+        List<Integer> quantities = eventCaptor.getAllValues().stream()
+                .map(event -> event.getPharma().getQuantity())
+                .collect(Collectors.toList());
+        assertThat(quantities, contains(30, 26));
+    }
+
+    @Test
+    void whenPharmaHasHoldsThenBatchDecrementsMayNotTakeThem() {
+        StockAdjustmentDTO decrement = StockAdjustmentDTO.builder().id(1L).delta(-4).build();
+        StockAdjustmentDTO increment = StockAdjustmentDTO.builder().id(1L).delta(4).build();
+        stockHolds.add(1L, 7);
+
+        when(pharmaStockBatchRepository.adjustQuantities(eq(Arrays.asList(decrement, increment)), floorCaptor.capture())).thenReturn(new int[]{0, 0});
+
+        stockBatchService.adjust(Arrays.asList(decrement, increment));
+
+        assertThat(floorCaptor.getValue().applyAsInt(decrement), is(equalTo(7)));
+        assertThat(floorCaptor.getValue().applyAsInt(increment), is(equalTo(0)));
+    }
+}
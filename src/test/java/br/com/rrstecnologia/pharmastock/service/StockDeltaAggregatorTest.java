@@ -0,0 +1,285 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.config.PharmastockProperties;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.exception.PharmaStockExceededException;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaCacheEvictor;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementBatchRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockDeltaAggregatorTest {
+
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    @TempDir
+    Path journalDirectory;
+
+    @Mock
+    private PharmaRepository pharmaRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private StockMovementBatchRepository stockMovementBatchRepository;
+    @Mock
+    private PharmaCacheEvictor pharmaCacheEvictor;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<Collection<Map.Entry<Long, Integer>>> deltasCaptor;
+    @Captor
+    private ArgumentCaptor<List<StockMovement>> movementsCaptor;
+
+    private StockDeltaAggregator stockDeltaAggregator;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stockDeltaAggregator = newAggregator();
+        stockDeltaAggregator.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        stockDeltaAggregator.stop();
+    }
+
+    @Test
+    void whenIncrementIsCalledThenReservedQuantityIsReturnedWithoutHittingTheDatabase() throws PharmaNotFoundException, PharmaStockExceededException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+
+        PharmaDTO incrementedPharmaDTO = stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 10, () -> 0, StockMovementSource.API);
+
+        assertThat(incrementedPharmaDTO.getQuantity(), is(equalTo(expectedPharmaDTO.getQuantity() + 10)));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), deltasCaptor.capture(), anyInt(), anyDeltaSetter());
+    }
+
+    @Test
+    void whenPharmaIsLoadedThenAdjustmentsRunNoStatement() throws PharmaNotFoundException, PharmaStockExceededException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 10, () -> 0, StockMovementSource.API);
+
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), -5, () -> 0, StockMovementSource.API);
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 1, () -> 0, StockMovementSource.BATCH);
+
+        verify(pharmaRepository).findById(expectedPharmaDTO.getId());
+        verify(jdbcTemplate).queryForList(anyString(), eq(Long.class), anyString());
+        verifyNoMoreInteractions(pharmaRepository, jdbcTemplate);
+        verifyNoInteractions(stockMovementBatchRepository, transactionManager);
+    }
+
+    @Test
+    void whenIncrementIsGreatherThanMaxThenThrowException() {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+
+        assertThrows(PharmaStockExceededException.class, () -> stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 80, () -> 0, StockMovementSource.API));
+    }
+
+    @Test
+    void whenDecrementIsLowerThanZeroThenThrowException() {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+
+        assertThrows(PharmaStockExceededException.class, () -> stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), -80, () -> 0, StockMovementSource.API));
+    }
+
+    @Test
+    void whenHoldIsRegisteredWhileDecrementingThenDecrementIsBackedOut() throws PharmaNotFoundException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+        AtomicInteger held = new AtomicInteger();
+
+        assertThrows(PharmaStockExceededException.class, () -> stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), -5,
+                () -> held.getAndSet(6), StockMovementSource.API));
+
+        assertThat(stockDeltaAggregator.quantity(expectedPharmaDTO.getId()), is(equalTo(expectedPharmaDTO.getQuantity())));
+    }
+
+    @Test
+    void whenFlushIsCalledThenCoalescedDeltasAreWritten() throws PharmaNotFoundException, PharmaStockExceededException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 10, () -> 0, StockMovementSource.API);
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), -5, () -> 0, StockMovementSource.API);
+        stockDeltaAggregator.flush();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), deltasCaptor.capture(), anyInt(), anyDeltaSetter());
+        Map.Entry<Long, Integer> expectedDelta = new AbstractMap.SimpleEntry<>(expectedPharmaDTO.getId(), 5);
+        assertThat(deltasCaptor.getValue(), contains(expectedDelta));
+        verify(pharmaCacheEvictor).evictPharmas(Collections.singleton(expectedPharmaDTO.getId()));
+        verify(stockMovementBatchRepository).insertAll(movementsCaptor.capture());
+        assertThat(movementsCaptor.getValue(), hasSize(2));
+        assertThat(movementsCaptor.getValue().get(0).getQuantity(), is(equalTo(20)));
+        assertThat(movementsCaptor.getValue().get(1).getDelta(), is(equalTo(-5)));
+        assertThat(movementsCaptor.getValue().get(1).getQuantity(), is(equalTo(15)));
+    }
+
+    @Test
+    void whenPharmaIsReadThenOnlyItsPendingDeltasAreAddedToTheLoadedQuantity() throws PharmaNotFoundException, PharmaStockExceededException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 10, () -> 0, StockMovementSource.API);
+
+        PharmaDTO loadedPharmaDTO = expectedPharmaDTO.toBuilder().quantity(12).build();
+        stockDeltaAggregator.applyPendingQuantity(loadedPharmaDTO);
+
+        assertThat(loadedPharmaDTO.getQuantity(), is(equalTo(22)));
+    }
+
+    @Test
+    void whenDeltasAreFlushedThenTheCounterIsDroppedAndSeededAgainFromTheDatabase() throws PharmaNotFoundException, PharmaStockExceededException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        PharmaDTO flushedPharmaDTO = expectedPharmaDTO.toBuilder().quantity(25).build();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId()))
+                .thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)))
+                .thenReturn(Optional.of(pharmaMapper.toModel(flushedPharmaDTO)));
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 10, () -> 0, StockMovementSource.API);
+
+        stockDeltaAggregator.flush();
+
+        PharmaDTO loadedPharmaDTO = flushedPharmaDTO.toBuilder().build();
+        stockDeltaAggregator.applyPendingQuantity(loadedPharmaDTO);
+        assertThat(loadedPharmaDTO.getQuantity(), is(equalTo(25)));
+        assertThat(stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 1, () -> 0, StockMovementSource.API).getQuantity(), is(equalTo(26)));
+    }
+
+    @Test
+    void whenPharmaIsRebuiltThenConcurrentAdjustmentsWaitAndLandOnTheRebuiltQuantity() throws Exception {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        PharmaDTO rebuiltPharmaDTO = expectedPharmaDTO.toBuilder().quantity(30).build();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId()))
+                .thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)))
+                .thenReturn(Optional.of(pharmaMapper.toModel(rebuiltPharmaDTO)));
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 10, () -> 0, StockMovementSource.API);
+        CountDownLatch rebuilding = new CountDownLatch(1);
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<Integer> rebuild = executor.submit(() -> stockDeltaAggregator.rebuild(expectedPharmaDTO.getId(), () -> {
+                rebuilding.countDown();
+                try {
+                    rebuilt.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 30;
+            }));
+            rebuilding.await();
+            Future<PharmaDTO> adjustment = executor.submit(() ->
+                    stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 1, () -> 0, StockMovementSource.API));
+
+            Thread.sleep(100);
+            assertThat(adjustment.isDone(), is(false));
+            verify(jdbcTemplate).batchUpdate(anyString(), deltasCaptor.capture(), anyInt(), anyDeltaSetter());
+
+            rebuilt.countDown();
+            assertThat(rebuild.get(5, TimeUnit.SECONDS), is(equalTo(30)));
+            assertThat(adjustment.get(5, TimeUnit.SECONDS).getQuantity(), is(equalTo(31)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenJournalHasUnflushedDeltasThenTheyAreReplayedOnStart() throws PharmaNotFoundException, PharmaStockExceededException, IOException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 10, () -> 0, StockMovementSource.API);
+        when(pharmaRepository.findAllById(Collections.singleton(expectedPharmaDTO.getId())))
+                .thenReturn(Collections.singletonList(pharmaMapper.toModel(expectedPharmaDTO)));
+
+        StockDeltaAggregator restartedAggregator = newAggregator();
+        restartedAggregator.start();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), deltasCaptor.capture(), anyInt(), anyDeltaSetter());
+        Map.Entry<Long, Integer> expectedDelta = new AbstractMap.SimpleEntry<>(expectedPharmaDTO.getId(), 10);
+        assertThat(deltasCaptor.getValue(), contains(expectedDelta));
+        verify(stockMovementBatchRepository).insertAll(movementsCaptor.capture());
+        assertThat(movementsCaptor.getValue().get(0).getSource(), is(equalTo(StockMovementSource.JOURNAL)));
+        assertThat(movementsCaptor.getValue().get(0).getQuantity(), is(equalTo(20)));
+        restartedAggregator.stop();
+    }
+
+    @Test
+    void whenJournalSegmentWasAppliedBeforeACrashThenItIsNotReplayedAgain() throws PharmaNotFoundException, PharmaStockExceededException, IOException {
+        PharmaDTO expectedPharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+        when(pharmaRepository.findById(expectedPharmaDTO.getId())).thenReturn(Optional.of(pharmaMapper.toModel(expectedPharmaDTO)));
+        stockDeltaAggregator.adjust(expectedPharmaDTO.getId(), 10, () -> 0, StockMovementSource.API);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), anyString())).thenReturn(Collections.singletonList(1L));
+
+        StockDeltaAggregator restartedAggregator = newAggregator();
+        restartedAggregator.start();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), deltasCaptor.capture(), anyInt(), anyDeltaSetter());
+        assertThat(Files.exists(journalDirectory.resolve("stock-journal-1.log")), is(false));
+        assertThat(Files.exists(journalDirectory.resolve("stock-journal-2.log")), is(true));
+        restartedAggregator.stop();
+    }
+
+    private static ParameterizedPreparedStatementSetter<Map.Entry<Long, Integer>> anyDeltaSetter() {
+        return any();
+    }
+
+    private StockDeltaAggregator newAggregator() {
+        PharmastockProperties properties = new PharmastockProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+        properties.getWriteBehind().setJournalDirectory(journalDirectory.toString());
+        return new StockDeltaAggregator(pharmaRepository, jdbcTemplate, stockMovementBatchRepository, pharmaCacheEvictor, transactionManager, properties);
+    }
+}
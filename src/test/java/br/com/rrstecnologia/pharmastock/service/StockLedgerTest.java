@@ -0,0 +1,103 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.StockMovement;
+import br.com.rrstecnologia.pharmastock.enums.PharmaChangeType;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementBatchRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class StockLedgerTest {
+
+    @Mock
+    private StockMovementBatchRepository stockMovementBatchRepository;
+
+    @Captor
+    private ArgumentCaptor<List<StockMovement>> movementsCaptor;
+
+    @InjectMocks
+    private StockLedger stockLedger;
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void whenNoTransactionIsActiveThenMovementIsInsertedImmediately() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().quantity(15).build().toPharmaDTO();
+
+        stockLedger.onPharmaChanged(PharmaChangedEvent.adjusted(pharmaDTO, 5, StockMovementSource.API));
+
+        verify(stockMovementBatchRepository).insertAll(movementsCaptor.capture());
+        StockMovement movement = movementsCaptor.getValue().get(0);
+        assertThat(movement.getPharmaId(), is(equalTo(pharmaDTO.getId())));
+        assertThat(movement.getDelta(), is(equalTo(5)));
+        assertThat(movement.getQuantity(), is(equalTo(15)));
+        assertThat(movement.getType(), is(equalTo(PharmaChangeType.ADJUSTED)));
+        assertThat(movement.getSource(), is(equalTo(StockMovementSource.API)));
+    }
+
+    @Test
+    void whenTransactionIsActiveThenMovementsAreInsertedInOneBatchBeforeCommit() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().quantity(10).build().toPharmaDTO();
+        TransactionSynchronizationManager.initSynchronization();
+
+        stockLedger.onPharmaChanged(PharmaChangedEvent.created(pharmaDTO, StockMovementSource.BATCH));
+        stockLedger.onPharmaChanged(PharmaChangedEvent.deleted(pharmaDTO, StockMovementSource.BATCH));
+        verify(stockMovementBatchRepository, never()).insertAll(anyList());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        verify(stockMovementBatchRepository).insertAll(movementsCaptor.capture());
+        assertThat(movementsCaptor.getValue(), hasSize(2));
+        assertThat(movementsCaptor.getValue().get(1).getDelta(), is(equalTo(-10)));
+        assertThat(movementsCaptor.getValue().get(1).getQuantity(), is(equalTo(0)));
+        assertThat(TransactionSynchronizationManager.hasResource(stockLedger), is(false));
+    }
+
+    @Test
+    void whenQuantityIsReplayedThenNoMovementIsRecorded() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+
+        stockLedger.onPharmaChanged(PharmaChangedEvent.adjusted(pharmaDTO, 3, StockMovementSource.REPLAY));
+
+        verifyNoInteractions(stockMovementBatchRepository);
+    }
+
+    @Test
+    void whenAdjustmentIsWrittenBehindThenTheAggregatorRecordsItsMovement() {
+        PharmaDTO pharmaDTO = PharmaDTOBuilder.builder().build().toPharmaDTO();
+
+        stockLedger.onPharmaChanged(PharmaChangedEvent.adjustedWriteBehind(pharmaDTO, 3, StockMovementSource.API));
+
+        verifyNoInteractions(stockMovementBatchRepository);
+    }
+}
@@ -0,0 +1,102 @@
+package br.com.rrstecnologia.pharmastock.service;
+
+import br.com.rrstecnologia.pharmastock.builder.PharmaDTOBuilder;
+import br.com.rrstecnologia.pharmastock.dto.PharmaDTO;
+import br.com.rrstecnologia.pharmastock.entity.Pharma;
+import br.com.rrstecnologia.pharmastock.enums.StockMovementSource;
+import br.com.rrstecnologia.pharmastock.event.PharmaChangedEvent;
+import br.com.rrstecnologia.pharmastock.exception.PharmaNotFoundException;
+import br.com.rrstecnologia.pharmastock.mapper.PharmaMapper;
+import br.com.rrstecnologia.pharmastock.repository.PharmaRepository;
+import br.com.rrstecnologia.pharmastock.repository.StockMovementRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StockMovementServiceTest {
+
+    private final PharmaMapper pharmaMapper = PharmaMapper.INSTANCE;
+
+    @Mock
+    private StockMovementRepository stockMovementRepository;
+    @Mock
+    private PharmaRepository pharmaRepository;
+    @Mock
+    private StockDeltaAggregator stockDeltaAggregator;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<PharmaChangedEvent> eventCaptor;
+
+    private StockMovementService stockMovementService;
+
+    @BeforeEach
+    void setUp() {
+        stockMovementService = new StockMovementService(stockMovementRepository, pharmaRepository,
+                stockDeltaAggregator, eventPublisher, transactionManager);
+    }
+
+    @Test
+    void whenReplayIsCalledThenQuantityIsRebuiltFromTheLedger() throws PharmaNotFoundException {
+        Pharma pharma = pharmaMapper.toModel(PharmaDTOBuilder.builder().quantity(10).build().toPharmaDTO());
+
+        when(pharmaRepository.findByIdForUpdate(pharma.getId())).thenReturn(Optional.of(pharma));
+        when(stockMovementRepository.sumDeltas(pharma.getId())).thenReturn(14L);
+        when(pharmaRepository.save(any(Pharma.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        PharmaDTO replayedPharmaDTO = stockMovementService.replay(pharma.getId());
+
+        assertThat(replayedPharmaDTO.getQuantity(), is(equalTo(14)));
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getDelta(), is(equalTo(4)));
+        assertThat(eventCaptor.getValue().getSource(), is(equalTo(StockMovementSource.REPLAY)));
+    }
+
+    @Test
+    void whenWriteBehindIsEnabledThenReplayRunsUnderTheAggregatorFlushLock() throws PharmaNotFoundException {
+        Pharma pharma = pharmaMapper.toModel(PharmaDTOBuilder.builder().quantity(10).build().toPharmaDTO());
+
+        when(stockDeltaAggregator.isEnabled()).thenReturn(true);
+        when(stockDeltaAggregator.rebuild(eq(pharma.getId()), any())).thenAnswer(invocation -> {
+            verify(pharmaRepository, never()).findByIdForUpdate(pharma.getId());
+            return invocation.<Supplier<?>>getArgument(1).get();
+        });
+        when(pharmaRepository.findByIdForUpdate(pharma.getId())).thenReturn(Optional.of(pharma));
+        when(stockMovementRepository.sumDeltas(pharma.getId())).thenReturn(14L);
+        when(pharmaRepository.save(any(Pharma.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        PharmaDTO replayedPharmaDTO = stockMovementService.replay(pharma.getId());
+
+        assertThat(replayedPharmaDTO.getQuantity(), is(equalTo(14)));
+        verify(stockDeltaAggregator).rebuild(eq(pharma.getId()), any());
+    }
+
+    @Test
+    void whenReplayIsCalledWithInvalidIdThenAnExceptionShouldBeThrown() {
+        when(pharmaRepository.findByIdForUpdate(1L)).thenReturn(Optional.empty());
+
+        assertThrows(PharmaNotFoundException.class, () -> stockMovementService.replay(1L));
+    }
+}